@@ -0,0 +1,36 @@
+package bashlogbench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bashlog.BashlogCompiler;
+
+/** Compile all queries of a program to bash scripts, including plan building and optimization */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompileBenchmark {
+
+  @Param({ "lubm", "owl2rl", "wide-8", "wide-16" })
+  public String program;
+
+  private Programs.Benchmark benchmark;
+
+  @Setup
+  public void setup() throws IOException {
+    benchmark = Programs.get(program);
+  }
+
+  @Benchmark
+  public void compile(Blackhole bh) {
+    for (String query : benchmark.queries) {
+      bh.consume(BashlogCompiler.prepareQuery(benchmark.program, query).compile());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package bashlogbench;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bashlog.BashlogCompiler;
+import bashlog.plan.SortNode;
+import common.plan.LogicalPlanBuilder;
+import common.plan.node.PlanNode;
+import common.plan.optimizer.Optimizer;
+import common.plan.optimizer.OptimizerDriver;
+
+/**
+ * Apply an optimizer stage of {@link BashlogCompiler#optimizerDriver()}, or a single optimizer of it, to the plans of all queries.
+ * Every optimizer of a stage is applied once. A single optimizer gets the plans as they are before its first application in the
+ * stages.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OptimizerBenchmark {
+
+  private static final List<String> STAGES = Arrays.asList("simplification", "bashlog");
+
+  @Param({ "lubm", "owl2rl", "wide-8", "wide-16" })
+  public String program;
+
+  @Param({ "simplification", "bashlog", "CombineFacts", "SimplifyRecursion", "PushDownJoin", "ReorderJoinLinear", "PushDownFilterAndProject",
+      "BashlogPlan", "BashlogOptimizer", "MultiOutput", "CombineFilter", "Materialize", "RemoveSorts" })
+  public String optimizer;
+
+  /** Optimizers which are benchmarked */
+  private List<Optimizer> optimizers;
+
+  /** Input plans for the optimizers */
+  private List<PlanNode> inputs = new ArrayList<>();
+
+  @Setup
+  public void setup() throws IOException {
+    Programs.Benchmark b = Programs.get(program);
+    SortedMap<String, PlanNode> plans = new LogicalPlanBuilder(PlanBuilderBenchmark.BUILTINS, new HashSet<>(b.queries))
+        .getPlanForProgram(b.program);
+
+    for (String query : b.queries) {
+      // same preparation as BashlogCompiler
+      PlanNode plan = new SortNode(plans.get(query), null);
+      OptimizerDriver driver = new BashlogCompiler(plan).optimizerDriver();
+      List<String> stageNames = driver.getStageNames();
+      boolean found = false;
+      for (int i = 0; i < stageNames.size() && !found; i++) {
+        List<Optimizer> stage = driver.getOptimizers(stageNames.get(i));
+        if (STAGES.indexOf(optimizer) == i) {
+          optimizers = stage;
+          found = true;
+          break;
+        }
+        for (Optimizer o : stage) {
+          if (o.getClass().getSimpleName().equals(optimizer)) {
+            optimizers = Collections.singletonList(o);
+            found = true;
+            break;
+          }
+          plan = o.apply(plan);
+        }
+      }
+      if (!found) {
+        throw new IllegalArgumentException("optimizer not found: " + optimizer);
+      }
+      inputs.add(plan);
+    }
+  }
+
+  @Benchmark
+  public void apply(Blackhole bh) {
+    for (PlanNode plan : inputs) {
+      for (Optimizer o : optimizers) {
+        plan = o.apply(plan);
+      }
+      bh.consume(plan);
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package bashlogbench;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import bashlog.BashlogCompiler;
+import common.parser.ParserReader;
+import common.parser.Program;
+
+/** Parse the datalog source of a program */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({ "lubm", "owl2rl", "wide-8", "wide-16" })
+  public String program;
+
+  private String source;
+
+  @Setup
+  public void setup() throws IOException {
+    source = Programs.get(program).source;
+  }
+
+  @Benchmark
+  public Program read() {
+    return Program.read(new ParserReader(source), BashlogCompiler.BASHLOG_PARSER_FEATURES);
+  }
+}
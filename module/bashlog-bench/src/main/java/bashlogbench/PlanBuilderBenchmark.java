@@ -0,0 +1,42 @@
+package bashlogbench;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import common.parser.Program;
+import common.plan.LogicalPlanBuilder;
+import common.plan.node.PlanNode;
+
+/** Build the logical plans of all queries of a program */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanBuilderBenchmark {
+
+  static final Set<String> BUILTINS = Collections.singleton("bash_command");
+
+  @Param({ "lubm", "owl2rl", "wide-8", "wide-16" })
+  public String program;
+
+  private Program p;
+
+  private Set<String> queries;
+
+  @Setup
+  public void setup() throws IOException {
+    Programs.Benchmark b = Programs.get(program);
+    p = b.program;
+    queries = new HashSet<>(b.queries);
+  }
+
+  @Benchmark
+  public SortedMap<String, PlanNode> getPlanForProgram() {
+    return new LogicalPlanBuilder(BUILTINS, queries).getPlanForProgram(p);
+  }
+}
@@ -0,0 +1,123 @@
+package bashlogbench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import bashlog.BashlogCompiler;
+import common.DatalogTools;
+import common.parser.*;
+import rdf.*;
+
+/** Datalog programs used by the benchmarks */
+public class Programs {
+
+  /** Directory with the LUBM queries and ontology; the facts themselves are not needed for compiling */
+  public static final String DATA_DIR = System.getProperty("bashlog.data", "../../data");
+
+  /** Number of rules of the synthetic programs */
+  private static final int WIDE_RULES = 20;
+
+  /** A program, and the relations that are compiled */
+  public static class Benchmark {
+
+    public final String source;
+
+    public final Program program;
+
+    public final List<String> queries;
+
+    Benchmark(Program program, List<String> queries) {
+      this.program = program;
+      this.source = program.toString();
+      this.queries = queries;
+    }
+  }
+
+  /**
+   * Create a benchmark program
+   * @param name lubm, owl2rl, or wide-N (synthetic rules with N body atoms)
+   */
+  public static Benchmark get(String name) throws IOException {
+    if (name.equals("lubm")) {
+      return lubm();
+    } else if (name.equals("owl2rl")) {
+      return owl2rl();
+    } else if (name.startsWith("wide-")) {
+      return wide(Integer.parseInt(name.substring("wide-".length())));
+    }
+    throw new IllegalArgumentException("unknown benchmark program " + name);
+  }
+
+  /** LUBM tbox as datalog, with the 14 LUBM queries, on a 3-column input */
+  public static Benchmark lubm() throws IOException {
+    String lubmDir = DATA_DIR + "/lubm";
+    Program p = Program.merge(Program.loadFile(lubmDir + "/tbox.txt"), Program.loadFile(lubmDir + "/queries.txt"));
+    p.addRules(inputRules(lubmDir + "/1", p));
+    return new Benchmark(p, queries(p));
+  }
+
+  /** OWL 2 RL rules generated from the LUBM ontology, with the LUBM SPARQL queries */
+  public static Benchmark owl2rl() throws IOException {
+    String lubmDir = DATA_DIR + "/lubm";
+    RDFTupleSerializer tupleSerializer = new RDFTripleTupleSerializer("allFacts");
+    try {
+      OWLOntologyManager ontologyManager = OWLManager.createOWLOntologyManager();
+      OWLOntology ontology = ontologyManager.loadOntologyFromOntologyDocument(new File(lubmDir + "/univ-bench.owl"));
+      Program ontologyProgram = new OWL2RLOntologyConverter(tupleSerializer).convert(ontology);
+
+      SPARQLConverter sparqlConverter = new SPARQLConverter(tupleSerializer);
+      Program p = ontologyProgram.copy();
+      int i = 1;
+      for (String query : new String(Files.readAllBytes(new File(lubmDir + "/queries.sparql").toPath())).split("\n\n")) {
+        p.addRules(sparqlConverter.convert(query, "query" + (i++)));
+      }
+      p.addRules(inputRules(lubmDir + "/1", ontologyProgram));
+      return new Benchmark(p, queries(p));
+    } catch (OWLOntologyCreationException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Synthetic program with rules of the form q_r(X0, Xn) :- e_a(X0, X1), e_b(X1, X2), ..., e_c(Xn-1, Xn), with additional conditions
+   * on X0 to create cycles in the join graph
+   */
+  public static Benchmark wide(int width) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < WIDE_RULES; i++) {
+      sb.append("e").append(i).append("(X, Y) :~ cat data/e").append(i).append("\n");
+    }
+    for (int r = 0; r < WIDE_RULES; r++) {
+      sb.append("q").append(r).append("(X0, X").append(width).append(") :- ");
+      for (int j = 0; j < width; j++) {
+        if (j > 0) sb.append(", ");
+        String from = j % 4 == 3 ? "X0" : "X" + j;
+        sb.append("e").append((r + j) % WIDE_RULES).append("(").append(from).append(", X").append(j + 1).append(")");
+      }
+      sb.append(".\n");
+    }
+    Program p = Program.read(new ParserReader(sb.toString()), BashlogCompiler.BASHLOG_PARSER_FEATURES);
+    List<String> queries = new ArrayList<>();
+    for (int r = 0; r < WIDE_RULES; r++) {
+      queries.add("q" + r + "/2");
+    }
+    return new Benchmark(p, queries);
+  }
+
+  private static Program inputRules(String factDir, Program p) {
+    Program result = new Program();
+    result.addRule(Rule.read(new ParserReader("allFacts(X,Y,Z) :~ cat " + factDir + "/all\n"), BashlogCompiler.BASHLOG_PARSER_FEATURES));
+    result.addRules(DatalogTools.inputRules3("allFacts", p, "rdf:type", false));
+    return result;
+  }
+
+  private static List<String> queries(Program p) {
+    return p.allRelations().stream().filter(r -> r.startsWith("query")).sorted().collect(Collectors.toList());
+  }
+}
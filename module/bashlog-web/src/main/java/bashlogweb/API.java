@@ -28,6 +28,7 @@ import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
 import bashlog.BashlogCompiler;
+import bashlog.CompilerCache;
 import common.DatalogTools;
 import common.parser.BashRule;
 import common.parser.ParseException;
@@ -88,11 +89,16 @@ public class API extends HttpServlet {
   }
 
   private static String postprocessQuery( Program query, String queryPred, HttpServletRequest req, HttpServletResponse resp) {
-    BashlogCompiler preparedQuery = BashlogCompiler.prepareQuery(query, queryPred);
+    BashlogCompiler preparedQuery = null;
+    String s;
     if(req.getParameter("debug_algebra") != null) {
+      preparedQuery = BashlogCompiler.prepareQuery(query, queryPred);
       preparedQuery.enableDebug();
+      s = preparedQuery.compile();
+    } else {
+      // repeated queries are answered from the cache
+      s = CompilerCache.getDefault().compile(query, queryPred);
     }
-    String s = preparedQuery.compile();
     if(req.getParameter("debug_datalog") != null) {
       s += "\n\n# request predicate: " + queryPred;
       queryPred = query.searchRelation(queryPred);
@@ -1,5 +1,6 @@
 package bashlog;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.*;
 
@@ -12,7 +13,10 @@ import bashlog.translation.BashTranslator;
 import common.parser.Program;
 import common.plan.LogicalPlanBuilder;
 import common.plan.node.PlanNode;
+import common.plan.node.RecursionNode;
 import common.plan.optimizer.*;
+import common.statistics.CardinalityEstimator;
+import common.statistics.StatisticsCollector;
 
 /**
  * Transform an extended relational algebra plan to a bash script.
@@ -35,11 +39,53 @@ public class BashlogCompiler {
 
   private String debug;
 
-  private List<List<Optimizer>> stages = Arrays.asList(//
-      Arrays.asList(new CombineFacts(), new SimplifyRecursion(), new PushDownJoin(), new ReorderJoinLinear(), new PushDownFilterAndProject(),
-          new SimplifyRecursion(), new PushDownFilterAndProject()),
-      Arrays.asList(new BashlogPlan(), new BashlogOptimizer(), new MultiOutput(), new CombineFilter(false), new Materialize(),
-          new CombineFilter(false)));
+  /** Directory where the script writes row counts and timings of each operator; null to disable profiling */
+  private String profileDir = null;
+
+  /** Directory for sorted base relations, shared between scripts; null to disable the cache */
+  private String sortCacheDir = null;
+
+  /** Whether materialized plans and the relations of recursions are stored compressed */
+  private boolean compressTmp = false;
+
+  /** Resources of the sort commands; null to split the memory evenly, see {@link #countConcurrentSorts(PlanNode)} */
+  private ResourceBudget resources = null;
+
+  /** Plan nodes of the profile, see {@link CompilerInternals#getProfiledNodes()} */
+  private List<PlanNode> profiledNodes = null;
+
+  /** Optimizer which decides the order of joins */
+  private Optimizer joinOrder = new ReorderJoinLinear();
+
+  /** Whether the values are replaced by integer identifiers during the evaluation */
+  private boolean dictionaryEncoding = false;
+
+  /** Time after which an optimizer stage stops repeating optimizers, see {@link OptimizerDriver#setStageBudget(long)} */
+  private long optimizerBudget = 10_000;
+
+  /** Driver that optimized the plan; has the statistics of the optimizers */
+  private OptimizerDriver optimizerDriver = null;
+
+  /** Optimizers applied before the translation: the simplification stage, and the stage that creates the bashlog plan */
+  public OptimizerDriver optimizerDriver() {
+    OptimizerDriver driver = new OptimizerDriver();
+    driver.setStageBudget(optimizerBudget);
+    driver.stage("simplification")//
+        .then(new CombineFacts(), new SimplifyRecursion(), new PushDownJoin(), joinOrder)//
+        .fixpoint(new PushDownFilterAndProject(), new SimplifyRecursion());
+    driver.stage("transforming to bashlog plan")//
+        .then(new BashlogPlan(statistics()), new BashlogOptimizer(), new MultiOutput(), new CombineFilter(false), new Materialize(),
+            new CombineFilter(false), new RemoveSorts());
+    if (dictionaryEncoding) {
+      driver.then(new DictionaryEncoding());
+    }
+    return driver;
+  }
+
+  /** Statistics of the input files, if the join order is cost based; used for choosing hash joins */
+  private StatisticsCollector statistics() {
+    return joinOrder instanceof ReorderJoinCost ? ((ReorderJoinCost) joinOrder).getStatistics() : null;
+  }
 
   private Map<Class<?>, BashTranslator> translators = new HashMap<>();
 
@@ -57,25 +103,30 @@ public class BashlogCompiler {
     isInitialized = true;
     // register translators
     Arrays
-        .asList(new bashlog.translation.BashCmd(), new bashlog.translation.CombineColumns(), new bashlog.translation.FileInput(),
-            new bashlog.translation.Join(), new bashlog.translation.Materialization(), new bashlog.translation.MultiFilter(),
-            new bashlog.translation.MultiOutput(), new bashlog.translation.ProjectFilter(), new bashlog.translation.Recursion(),
-            new bashlog.translation.Sort(), new bashlog.translation.Union(), new bashlog.translation.Fact())
+        .asList(new bashlog.translation.BashCmd(), new bashlog.translation.CombineColumns(), new bashlog.translation.Dictionary(),
+            new bashlog.translation.FileInput(),
+            new bashlog.translation.HashJoin(), new bashlog.translation.Join(), new bashlog.translation.Materialization(), new bashlog.translation.MultiFilter(),
+            new bashlog.translation.MultiOutput(), new bashlog.translation.Output(), new bashlog.translation.ProjectFilter(),
+            new bashlog.translation.Recursion(), new bashlog.translation.Sort(), new bashlog.translation.Union(),
+            new bashlog.translation.Fact())
         .forEach(t -> t.supports().forEach(c -> translators.put(c, t)));
 
     if (debugBuilder != null) {
       debugBuilder.append("orig\n");
       debugBuilder.append(root.toPrettyString() + "\n");
     }
-    root = new SortNode(root, null);
+    // the plans of an output node were already wrapped, see prepareQueries(...)
+    if (!(root instanceof OutputNode)) {
+      root = new SortNode(root, null);
+    }
 
-    List<String> stageNames = Arrays.asList("simplification", "optimization", "transforming to bashlog plan");
-    //root = Optimizer.applyOptimizer(root, stageNames, stages, debugBuilder);
+    optimizerDriver = optimizerDriver();
     if (debugBuilder == null) {
-      root = Optimizer.applyOptimizer(root, stages);
+      root = optimizerDriver.apply(root);
     } else {
       try {
-        root = Optimizer.applyOptimizer(root, stageNames, stages, debugBuilder);
+        root = optimizerDriver.apply(root, debugBuilder);
+        debugBuilder.append("\n\noptimizer statistics\n").append(optimizerDriver.statisticsString());
       } catch (Exception e) {
         throw e;
       } finally {
@@ -116,11 +167,22 @@ public class BashlogCompiler {
     header.append("sort=\"sort \"\n");
     header.append("check() { grep -- $1 <(sort --help) > /dev/null; }\n");
 
-    // count sort usage
-    int sortBuffer = (int) Math.ceil(100. / Math.max(1, countConcurrentSorts(root)));
+    if (resources == null) {
+      // count sort usage
+      int sortBuffer = (int) Math.ceil(100. / Math.max(1, countConcurrentSorts(root)));
 
-    header.append("check \"--buffer-size\" && sort=\"$sort --buffer-size=" + sortBuffer + "% \"\n");
-    header.append("check \"--parallel\"    && sort=\"$sort --parallel=2 \"\n\n");
+      header.append("check \"--buffer-size\" && sort=\"$sort --buffer-size=" + sortBuffer + "% \"\n");
+      header.append("check \"--parallel\"    && sort=\"$sort --parallel=2 \"\n\n");
+    } else {
+      // every sort command gets its own options, see ResourceBudget
+      header.append("# resources: " + resources + "\n");
+      header.append("check \"--buffer-size\" && sort_buffer=1\n");
+      header.append("check \"--parallel\"    && sort_parallel=1\n\n");
+    }
+
+    if (compressTmp) {
+      header.append(compressHeader());
+    }
 
     // n-triple support
     header.append("read_ntriples() { $awk -F\" \" '{ sub(\" \", \"\\t\"); sub(\" \", \"\\t\"); sub(/ \\.$/, \"\"); print $0 }' \"$@\"; }\n");
@@ -128,22 +190,162 @@ public class BashlogCompiler {
 
     header.append("unlock() {\n");
     header.append("    mv \"$1\" \"$1_done\";\n");
-    header.append("    (cat \"$1_done\" &> /dev/null; rm -f \"$1_done\") &\n");
+    header.append("    (cat \"$1_done\" &> /dev/null; rm -f \"$1_done\") &> /dev/null &\n");
     header.append("    while [ -p \"$1_done\" ]; do exec 3> \"$1_done\"; exec 3>&-; done\n");
     header.append("    rm -f \"$1_done\";\n");
     header.append("}\n\n\n");
 
+    if (hasRecursion(root)) {
+      if (compressTmp) {
+        header.append("merge_runs() {\n");
+        header.append("    local args=\"\" f\n");
+        header.append("    for f in \"$1\"_[0-9]*; do args=\"$args <(decompress_tmp $f)\"; done\n");
+        header.append("    eval \"$sort -m $args\"\n");
+        header.append("}\n");
+      }
+      header.append(addRunHeader());
+    }
+
     CompilerInternals bc = new CompilerInternals(translators, root);
+    if (compressTmp) {
+      bc.enableCompressTmp();
+    }
+    if (resources != null) {
+      bc.setSortOptions(resources.allocate(root, new CardinalityEstimator(statistics())));
+    }
+    if (profileDir != null) {
+      header.append(profileHeader());
+      bc.enableProfiling();
+    }
+    if (sortCacheDir != null) {
+      header.append(sortCacheHeader());
+      bc.enableSortCache();
+    }
     Bash e = bc.compile(root);
+    if (profileDir != null) {
+      profiledNodes = bc.getProfiledNodes();
+      for (int i = 0; i < profiledNodes.size(); i++) {
+        header.append("# profile node " + i + ": " + profiledNodes.get(i).hash() + " " + profiledNodes.get(i).operatorString().replace("\n", " ") + "\n");
+      }
+      header.append("\n");
+    }
     String result = header.toString() + e.generate() + postCmd + "\n\n rm -f tmp/*\n";
 
     return result;
   }
 
+  /**
+   * Functions for profiling. prof_node passes its input through, and appends the number of rows and bytes to $prof_dir/ID.rows,
+   * and the start time, the time of the first row, and the end time (in ns) to $prof_dir/ID.time. Operators in recursions are
+   * executed several times, so the files might have several lines.
+   */
+  private String profileHeader() {
+    StringBuilder header = new StringBuilder();
+    header.append("prof_dir='" + profileDir.replace("'", "'\\''") + "'\n");
+    header.append("mkdir -p \"$prof_dir\"; rm -f \"$prof_dir\"/*.rows \"$prof_dir\"/*.time\n");
+    header.append("date +%s%N > \"$prof_dir/start\"\n");
+    header.append("prof_node() {\n");
+    header.append("    local start first=0 end line\n");
+    header.append("    start=$(date +%s%N)\n");
+    header.append("    if IFS= read -r line; then\n");
+    header.append("        first=$(date +%s%N)\n");
+    header.append("        { printf '%s\\n' \"$line\"; cat; } | $awk -v out=\"$prof_dir/$1.rows\" "
+        + "'{ n++; b += length($0) + 1; print } END { printf \"%.0f\\t%.0f\\n\", n, b >> out }'\n");
+    header.append("    else\n");
+    header.append("        printf '0\\t0\\n' >> \"$prof_dir/$1.rows\"\n");
+    header.append("    fi\n");
+    header.append("    end=$(date +%s%N)\n");
+    header.append("    printf '%s\\t%s\\t%s\\n' \"$start\" \"$first\" \"$end\" >> \"$prof_dir/$1.time\"\n");
+    header.append("}\n\n");
+    return header.toString();
+  }
+
+  /**
+   * Functions for compressed temporary files. Uses the fastest available compressor (zstd, lz4, or gzip), also for the temporary
+   * files of sort.
+   */
+  private String compressHeader() {
+    StringBuilder header = new StringBuilder();
+    header.append("if type zstd > /dev/null 2>&1; then compress_prog=\"zstd\"; ");
+    header.append("elif type lz4 > /dev/null 2>&1; then compress_prog=\"lz4\"; ");
+    header.append("else compress_prog=\"gzip\"; fi\n");
+    header.append("compress_tmp() { $compress_prog -q -1 -c; }\n");
+    header.append("decompress_tmp() { $compress_prog -q -d -c \"$1\"; }\n");
+    header.append("check \"--compress-program\" && sort=\"$sort --compress-program=$compress_prog \"\n\n");
+    return header.toString();
+  }
+
+  /**
+   * Function for the full relation of recursions, which is stored as sorted runs PREFIX_1, PREFIX_2, ... (largest first). add_run
+   * appends a sorted file as run, and merges the last two runs as long as the previous run is at most twice as large as the last
+   * one. Every row is thus rewritten a logarithmic number of times, and there are at most logarithmically many runs.
+   */
+  private String addRunHeader() {
+    StringBuilder header = new StringBuilder();
+    header.append("add_run() {\n");
+    header.append("    local n=1 size\n");
+    if (compressTmp) {
+      header.append("    if [ -z \"$(decompress_tmp \"$2\" | head -c 1)\" ]; then rm -f \"$2\"; return; fi\n");
+    } else {
+      header.append("    if [ ! -s \"$2\" ]; then rm -f \"$2\"; return; fi\n");
+    }
+    header.append("    while [ -e \"$1_$n\" ]; do n=$((n + 1)); done\n");
+    header.append("    mv \"$2\" \"$1_$n\"\n");
+    header.append("    size=$(wc -c < \"$1_$n\")\n");
+    header.append("    while [ $n -gt 1 ] && [ $(wc -c < \"$1_$((n - 1))\") -le $((2 * size)) ]; do\n");
+    if (compressTmp) {
+      header.append("        $sort -m <(decompress_tmp \"$1_$((n - 1))\") <(decompress_tmp \"$1_$n\") | compress_tmp > \"$1_merge\"\n");
+    } else {
+      header.append("        $sort -m -o \"$1_merge\" \"$1_$((n - 1))\" \"$1_$n\"\n");
+    }
+    header.append("        mv \"$1_merge\" \"$1_$((n - 1))\"; rm -f \"$1_$n\"\n");
+    header.append("        n=$((n - 1)); size=$(wc -c < \"$1_$n\")\n");
+    header.append("    done\n");
+    header.append("}\n\n");
+    return header.toString();
+  }
+
+  /**
+   * Functions for the sort cache. cache_file prints the name of the cache file for a key and the input files, which includes their
+   * path, inode, modification and change time (with nanoseconds, as a file might be rewritten within a second) and size.
+   * cache_store passes its input through, and writes it to a temporary file. cache_commit moves the temporary file to the cache
+   * file if all commands of the pipeline succeeded (its arguments after the file names are the exit statuses, ${PIPESTATUS[@]}),
+   * otherwise it removes the temporary file, as its content might be incomplete.
+   */
+  private String sortCacheHeader() {
+    StringBuilder header = new StringBuilder();
+    header.append("sort_cache='" + sortCacheDir.replace("'", "'\\''") + "'\n");
+    header.append("cache_file() {\n");
+    header.append("    local key=\"$1\" f; shift\n");
+    header.append("    for f in \"$@\"; do key=\"$key $(readlink -f \"$f\") $(stat -L -c '%i %y %z %s' \"$f\" 2> /dev/null)\"; done\n");
+    header.append("    echo \"$sort_cache/$(echo \"$key\" | md5sum | cut -c 1-32)\"\n");
+    header.append("}\n");
+    header.append("cache_store() {\n");
+    header.append("    mkdir -p \"$sort_cache\" 2> /dev/null\n");
+    header.append("    tee \"$1\"\n");
+    header.append("}\n");
+    header.append("cache_commit() {\n");
+    header.append("    local tmp=\"$1\" f=\"$2\" s; shift 2\n");
+    header.append("    for s in \"$@\"; do\n");
+    header.append("        if [ \"$s\" != 0 ]; then rm -f \"$tmp\"; return \"$s\"; fi\n");
+    header.append("    done\n");
+    header.append("    mv -f \"$tmp\" \"$f\"\n");
+    header.append("}\n\n");
+    return header.toString();
+  }
+
+  private static boolean hasRecursion(PlanNode p) {
+    return p instanceof RecursionNode || p.children().stream().anyMatch(BashlogCompiler::hasRecursion);
+  }
+
   private int countConcurrentSorts(PlanNode p) {
     if (p instanceof SortNode) {
       return Math.max(1, countConcurrentSorts(((SortNode) p).getTable()));
     }
+    if (p instanceof OutputNode) {
+      // outputs are written one after the other
+      return p.children().stream().mapToInt(c -> countConcurrentSorts(c)).max().orElse(1);
+    }
     return p.children().stream().mapToInt(c -> countConcurrentSorts(c)).sum();
   }
 
@@ -151,6 +353,11 @@ public class BashlogCompiler {
     return debug;
   }
 
+  /** Time spent and nodes rewritten by each optimizer, or null if the script was not compiled yet */
+  public String optimizerStatistics() {
+    return optimizerDriver == null ? null : optimizerDriver.statisticsString();
+  }
+
   /** Transform datalog program and query relation to a bash script. */
   public static String compileQuery(Program p, String query) throws IOException {
     BashlogCompiler bc = prepareQuery(p, query);
@@ -176,12 +383,101 @@ public class BashlogCompiler {
     return bc;
   }
 
+  /**
+   * Initialize bashlog compiler for evaluating several relations with one script. The script writes the result of queries[i] to
+   * outputFiles[i]; common subplans of the queries are evaluated only once.
+   */
+  public static BashlogCompiler prepareQueries(Program p, List<String> queries, List<String> outputFiles) {
+    if (queries.size() != outputFiles.size()) throw new IllegalArgumentException("need one output file per query");
+    Set<String> builtin = new HashSet<>();
+    builtin.add("bash_command");
+
+    List<String> relations = new ArrayList<>();
+    for (String query : queries) {
+      String relation = p.searchRelation(query);
+      if (relation == null) throw new IllegalArgumentException("relation not found: " + query);
+      relations.add(relation);
+    }
+    SortedMap<String, PlanNode> plan = new LogicalPlanBuilder(builtin, new HashSet<>(relations)).getPlanForProgram(p);
+
+    List<PlanNode> plans = new ArrayList<>();
+    for (String relation : relations) {
+      plans.add(new SortNode(plan.get(relation), null));
+    }
+    return new BashlogCompiler(new OutputNode(plans, outputFiles));
+  }
+
   public void enableDebug() {
     if (this.debugBuilder == null) {
       this.debugBuilder = new StringBuilder();
     }
   }
 
+  /** Time in milliseconds after which an optimizer stage stops repeating its optimizers to reach a fixpoint */
+  public void setOptimizerBudget(long millis) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.optimizerBudget = millis;
+  }
+
+  /** Let the script write row counts and timings of every operator to a directory; read them with {@link Profile#read(File, BashlogCompiler)} */
+  public void enableProfiling(String profileDir) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.profileDir = profileDir;
+  }
+
+  public String getProfileDir() {
+    return profileDir;
+  }
+
+  /**
+   * Store sorted base relations (input files, possibly filtered and projected) in a directory, and reuse them in later runs while
+   * the input files do not change
+   */
+  public void setSortCache(String sortCacheDir) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.sortCacheDir = sortCacheDir;
+  }
+
+  /**
+   * Store materialized plans and the relations of recursions compressed, to reduce the disk traffic at the expense of CPU time.
+   * Also lets sort compress its temporary files.
+   */
+  public void setCompressTmp(boolean compressTmp) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.compressTmp = compressTmp;
+  }
+
+  /**
+   * Replace the values of the input relations by integer identifiers at the beginning of the script, and the identifiers of the
+   * result by their values at the end (see {@link DictionaryEncoding}). Sorts and joins then compare short keys.
+   */
+  public void setDictionaryEncoding(boolean dictionaryEncoding) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.dictionaryEncoding = dictionaryEncoding;
+  }
+
+  /** Split cores and memory between the sort commands, and let them use the temporary directories of the budget */
+  public void setResources(ResourceBudget resources) {
+    if (bash != null) throw new IllegalStateException("script already compiled");
+    this.resources = resources;
+  }
+
+  /** Plan nodes whose output is profiled; the index is used as file name in the profile directory */
+  public List<PlanNode> getProfiledNodes() {
+    return profiledNodes;
+  }
+
+  /** Optimized plan, available after compilation */
+  public PlanNode getPlan() {
+    return root;
+  }
+
+  /** Replace the join order heuristic, e.g., with {@link ReorderJoinCost} */
+  public void setJoinOrder(Optimizer joinOrder) {
+    if (isInitialized) throw new IllegalStateException("plan already optimized");
+    this.joinOrder = joinOrder;
+  }
+
   /*public static void main(String[] args) {
     PlanNode table = new TSVFileNode("abc", 5);
     MultiFilterNode mfn = new MultiFilterNode(new HashSet<>(Arrays.asList(
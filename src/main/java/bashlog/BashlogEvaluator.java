@@ -1,8 +1,12 @@
 package bashlog;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -24,8 +28,32 @@ public class BashlogEvaluator implements Evaluator {
 
   private boolean debug = false;
 
+  /** Whether scripts record row counts and timings of their operators */
+  private boolean profiling = false;
+
+  /** Cache for compiled scripts; not used when debugging, profiling, or with compiler options */
+  private CompilerCache cache = CompilerCache.getDefault();
+
+  /** Sets options of the compiler of every script, see {@link #setCompilerOptions(Consumer)}; null for the default options */
+  private Consumer<BashlogCompiler> compilerOptions = null;
+
+  /** Profiles of the scripts that were executed, by relation */
+  private final Map<String, Profile> profiles = new HashMap<>();
+
   private long timeCompile = 0, timeBash = 0; // in nano seconds
 
+  /**
+   * Content hash, size, and modification time ("hash size time") of the files written to the data directory, see
+   * {@link #writeFacts}
+   */
+  private final Map<String, String> writtenFacts = new HashMap<>();
+
+  /** Script whose output is currently streamed */
+  private ScriptRun running = null;
+
+  /** Whether scripts can be started in a new process group, so that they can be stopped together with their child processes */
+  public static final boolean SETSID_AVAILABLE = new File("/usr/bin/setsid").exists() || new File("/bin/setsid").exists();
+
   public BashlogEvaluator(String workingDir, String dataDir) {
     new File(workingDir).mkdirs();
     new File(dataDir).mkdirs();
@@ -38,6 +66,29 @@ public class BashlogEvaluator implements Evaluator {
     this.debug = debug;
   }
 
+  /** Record row counts and timings of every operator; see {@link #getProfile(String)} */
+  public void enableProfiling() {
+    this.profiling = true;
+  }
+
+  /** Use another cache for compiled scripts, or null to compile every query */
+  public void setCompilerCache(CompilerCache cache) {
+    this.cache = cache;
+  }
+
+  /**
+   * Set options of the compiler of every script, e.g., {@code bc -> bc.setCompressTmp(true)}. The scripts are not cached, as the
+   * cache does not know the options.
+   */
+  public void setCompilerOptions(Consumer<BashlogCompiler> compilerOptions) {
+    this.compilerOptions = compilerOptions;
+  }
+
+  /** Profile of the last script that computed the relation, or null if it was not profiled or is still running */
+  public Profile getProfile(String relation) {
+    return profiles.get(relation);
+  }
+
   @Override
   public Map<String, Long> getTiming() {
     HashMap<String, Long> map = new HashMap<>();
@@ -46,72 +97,336 @@ public class BashlogEvaluator implements Evaluator {
     return map;
   }
 
+  /** Output directory of scripts that compute several relations, relative to the working directory */
+  private static final String OUTPUT_DIR = "out";
+
   public FactsSet evaluate(Program program, FactsSet facts, Set<String> relationsToOutput) throws IOException {
+    if (relationsToOutput.size() > 1) {
+      return evaluateShared(program, facts, relationsToOutput);
+    }
+    SimpleFactsSet result = new SimpleFactsSet();
+    try (StreamingFactsSet rows = stream(program, facts, relationsToOutput)) {
+      for (String relation : relationsToOutput) {
+        try (Stream<Comparable<?>[]> stream = rows.getByRelation(relation)) {
+          stream.forEach(row -> result.add(relation, row));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Evaluate lazily. The bash script for a relation is started when its rows are requested,
+   * and rows are returned while the script is still running. Only one stream can be open at a time,
+   * as the scripts share the tmp directory. Closing a stream stops its script.
+   */
+  public StreamingFactsSet stream(Program program, FactsSet facts, Set<String> relationsToOutput) throws IOException {
+    Program prog = prepare(program, facts);
+    StreamingFactsSet result = new StreamingFactsSet();
+    for (String relation : relationsToOutput) {
+      result.put(relation, () -> {
+        try {
+          if (useCache()) {
+            return run(Collections.singletonList(relation), compileCached(prog, relation), null);
+          }
+          BashlogCompiler bc = compile(BashlogCompiler.prepareQuery(prog, relation), relation);
+          return run(Collections.singletonList(relation), bc.compile(), bc);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    return result;
+  }
+
+  /**
+   * Evaluate all relations with one script, so that subplans used by several relations are computed only once. The script writes
+   * the relations to files in the output directory, which are read after the script finished.
+   */
+  private FactsSet evaluateShared(Program program, FactsSet facts, Set<String> relationsToOutput) throws IOException {
+    Program prog = prepare(program, facts);
+    File outDir = new File(workingDir, OUTPUT_DIR);
+    outDir.mkdirs();
+    FileUtils.cleanDirectory(outDir);
+
+    List<String> relations = new ArrayList<>(relationsToOutput), files = new ArrayList<>();
+    for (String relation : relations) {
+      files.add(OUTPUT_DIR + "/" + relation.replace("/", "_"));
+    }
+
+    BashlogCompiler bc = null;
+    String script;
+    if (useCache()) {
+      timeCompile -= System.nanoTime();
+      script = cache.compile(prog, relations, files);
+      timeCompile += System.nanoTime();
+    } else {
+      bc = compile(BashlogCompiler.prepareQueries(prog, relations, files), relations.toString());
+      script = bc.compile();
+    }
+    try (Stream<Comparable<?>[]> stream = run(relations, script, bc)) {
+      // the script writes to the output files, consume anything else it prints
+      stream.forEach(row -> {
+      });
+    }
+
+    SimpleFactsSet result = new SimpleFactsSet();
+    for (int i = 0; i < relations.size(); i++) {
+      String relation = relations.get(i);
+      try (Stream<String> lines = Files.lines(Paths.get(workingDir, files.get(i)))) {
+        lines.forEach(line -> result.add(relation, line.split("\t")));
+      }
+    }
+    FileUtils.deleteQuietly(outDir);
+    return result;
+  }
+
+  /** Clean the tmp directory, and store the facts in the data directory; returns a program that reads them */
+  private Program prepare(Program program, FactsSet facts) throws IOException {
     // clean tmp dir
     FileUtils.cleanDirectory(new File(workingDir + "/tmp"));
-    
+
     timeCompile = 0;
     timeBash = 0;
-    program = program.copy();
+    Program prog = program.copy();
     for (String relation : facts.getRelations()) {
       String path = dataDir + "/" + relation.replace("/", "_");
-      TSVWriter writer = new TSVWriter(path);
-      facts.getByRelation(relation).forEach(row -> {
-        List<String> vals = new ArrayList<>();
-        for (Comparable<?> i : row) {
-          vals.add(Objects.toString(i));
-        }
-        try {
-          writer.write(vals);
-        } catch (IOException e) {
-          e.printStackTrace();
-        }
-      });
-      writer.close();
+      writeFacts(facts, relation, path);
       // construct bash command 'cat $path'
-      program.addRule(Rule.bashRule(relation, "cat " + path));
+      prog.addRule(Rule.bashRule(relation, "cat " + path));
     }
+    return prog;
+  }
 
-    SimpleFactsSet result = new SimpleFactsSet();
-    for (String relation : relationsToOutput) {
-      Runtime run = Runtime.getRuntime();
-      timeCompile -= System.nanoTime();
-      BashlogCompiler bc = BashlogCompiler.prepareQuery(program, relation);
-      if (debug) {
-        bc.enableDebug();
+  /**
+   * Write the rows of a relation to a TSV file. If this evaluator wrote the file before, and its size and modification time did not
+   * change since then, the rows are hashed first, and the file is only rewritten if its content changed (the rows are then read
+   * twice).
+   */
+  private void writeFacts(FactsSet facts, String relation, String path) throws IOException {
+    Path file = Paths.get(path);
+    String written = writtenFacts.remove(path);
+    if (written != null && Files.exists(file) && written.endsWith(" " + stamp(file))) {
+      TSVChannelWriter hash = new TSVChannelWriter(null);
+      write(facts, relation, hash);
+      if (written.equals(hash.getHash() + " " + stamp(file))) {
+        LOG.debug("facts of {} did not change, keeping {}", relation, path);
+        writtenFacts.put(path, written);
+        return;
       }
-      String query = null;
-      try {
-        query = bc.compile();
-      } finally {
-        if (debug) {
-          System.out.println(query);
-          System.out.println(bc.debugInfo());
-        }
+    }
+    TSVChannelWriter writer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      writer = new TSVChannelWriter(channel);
+      write(facts, relation, writer);
+    }
+    writtenFacts.put(path, writer.getHash() + " " + stamp(file));
+  }
+
+  /** Size and modification time of a file */
+  private static String stamp(Path file) throws IOException {
+    return Files.size(file) + " " + Files.getLastModifiedTime(file);
+  }
+
+  private static void write(FactsSet facts, String relation, TSVChannelWriter writer) throws IOException {
+    try (Stream<Comparable<?>[]> rows = facts.getByRelation(relation)) {
+      for (Iterator<Comparable<?>[]> it = rows.iterator(); it.hasNext();) {
+        writer.write(it.next());
       }
-      timeCompile += System.nanoTime();
-      LOG.debug("running " + relation);
+    }
+    writer.close();
+  }
+
+  private boolean useCache() {
+    return cache != null && !debug && !profiling && compilerOptions == null;
+  }
+
+  private BashlogCompiler compile(BashlogCompiler bc, String relation) throws IOException {
+    timeCompile -= System.nanoTime();
+    if (compilerOptions != null) {
+      compilerOptions.accept(bc);
+    }
+    if (debug) {
+      bc.enableDebug();
+    }
+    if (profiling) {
+      bc.enableProfiling(Files.createTempDirectory("bashlog-profile-").toString());
+    }
+    String query = null;
+    try {
+      query = bc.compile();
+    } finally {
       if (debug) {
-        LOG.info("saving program to /tmp/bashlog.sh, and debug info to /tmp/bashlog-debug.txt");
-        Files.write(Paths.get("/tmp/bashlog-debug.txt"), bc.debugInfo().getBytes());
-        Files.write(Paths.get("/tmp/bashlog.sh"), query.getBytes());
+        System.out.println(query);
+        System.out.println(bc.debugInfo());
       }
-      timeBash -= System.nanoTime();
-      long start = System.nanoTime();
-      Path progFile = Files.createTempFile("bashlog-eval-", "");
+    }
+    timeCompile += System.nanoTime();
+    LOG.debug("running " + relation);
+    if (debug) {
+      LOG.info("saving program to /tmp/bashlog.sh, and debug info to /tmp/bashlog-debug.txt");
+      Files.write(Paths.get("/tmp/bashlog-debug.txt"), bc.debugInfo().getBytes());
+      Files.write(Paths.get("/tmp/bashlog.sh"), query.getBytes());
+    }
+    return bc;
+  }
+
+  private String compileCached(Program program, String relation) {
+    timeCompile -= System.nanoTime();
+    String script = cache.compile(program, relation);
+    timeCompile += System.nanoTime();
+    LOG.debug("running " + relation);
+    return script;
+  }
+
+  /**
+   * Start the script, and stream its output
+   * @param compiler compiler of the script, needed for reading the profile; null if the script is not profiled
+   */
+  private Stream<Comparable<?>[]> run(List<String> relations, String script, BashlogCompiler compiler) throws IOException {
+    if (running != null) {
+      throw new IllegalStateException("another bashlog script is still running, please close its stream first");
+    }
+    relations.forEach(profiles::remove);
+    running = new ScriptRun(relations, script, compiler);
+    ScriptRun run = running;
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(run, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(run::close);
+  }
+
+  /** A running bash script. Iterates over the rows of its output; the script is stopped when closing the iterator. */
+  private class ScriptRun implements Iterator<Comparable<?>[]>, Closeable {
+
+    /** Relations computed by the script */
+    private final List<String> relations;
+
+    /** Compiler of a profiled script, otherwise null */
+    private final BashlogCompiler compiler;
+
+    private final Path progFile, pidFile;
+
+    private final Process proc;
+
+    private final BufferedReader reader;
+
+    private final long start;
+
+    private String next;
+
+    private boolean finished = false;
+
+    ScriptRun(List<String> relations, String query, BashlogCompiler compiler) throws IOException {
+      this.relations = relations;
+      this.compiler = compiler;
+      progFile = Files.createTempFile("bashlog-eval-", "");
+      pidFile = Files.createTempFile("bashlog-pid-", "");
       Files.write(progFile, query.getBytes());
       LOG.info("saving program to {}", progFile);
-      Process proc = run.exec(new String[] { "/bin/bash", progFile.toAbsolutePath().toString() }, null, Paths.get(workingDir).toFile());
-      BufferedReader br = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-      String line;
-      while ((line = br.readLine()) != null) {
-        result.add(relation, line.split("\t"));
+      timeBash -= System.nanoTime();
+      start = System.nanoTime();
+      // start the script in its own process group, so that it can be stopped together with its child processes
+      List<String> cmd = new ArrayList<>();
+      if (SETSID_AVAILABLE) {
+        cmd.add("setsid");
+      }
+      cmd.addAll(Arrays.asList("/bin/bash", "-c", "echo $$ > \"$0\"; exec /bin/bash \"$1\"", //
+          pidFile.toAbsolutePath().toString(), progFile.toAbsolutePath().toString()));
+      proc = new ProcessBuilder(cmd).directory(Paths.get(workingDir).toFile()).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      proc.getOutputStream().close();
+      reader = new BufferedReader(new InputStreamReader(proc.getInputStream()));
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null && !finished) {
+        try {
+          next = reader.readLine();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        if (next == null) {
+          finish();
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public Comparable<?>[] next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String line = next;
+      next = null;
+      return line.split("\t");
+    }
+
+    /** Called when all output was read */
+    private void finish() {
+      finished = true;
+      try {
+        proc.waitFor();
+        // stop background processes that outlived the script
+        killProcessGroup();
+      } catch (IOException e) {
+        LOG.warn("error while stopping bash script: " + e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       }
       timeBash += System.nanoTime();
       LOG.debug("bash command executed in " + (System.nanoTime() - start) * 1e-9 + "s");
+      if (compiler != null && compiler.getProfileDir() != null) {
+        File profileDir = new File(compiler.getProfileDir());
+        try {
+          Profile profile = Profile.read(profileDir, compiler);
+          relations.forEach(relation -> profiles.put(relation, profile));
+          if (debug) {
+            LOG.info("profile of {}:\n{}", relations, profile.explain());
+          }
+        } catch (IOException | RuntimeException e) {
+          LOG.warn("could not read profile of {}: {}", relations, e.getMessage());
+        }
+      }
+      close();
     }
 
-    return result;
+    private void killProcessGroup() throws IOException, InterruptedException {
+      String pid = new String(Files.readAllBytes(pidFile)).trim();
+      if (SETSID_AVAILABLE && !pid.isEmpty()) {
+        new ProcessBuilder("kill", "-TERM", "--", "-" + pid).start().waitFor();
+      }
+    }
+
+    @Override
+    public void close() {
+      if (running != this) {
+        return;
+      }
+      running = null;
+      try {
+        if (proc.isAlive()) {
+          if (!finished) {
+            timeBash += System.nanoTime();
+            finished = true;
+          }
+          killProcessGroup();
+          proc.destroy();
+          proc.waitFor();
+          // remove intermediate results of the stopped script
+          FileUtils.cleanDirectory(new File(workingDir + "/tmp"));
+        }
+        reader.close();
+      } catch (IOException e) {
+        LOG.warn("error while stopping bash script: " + e.getMessage());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } finally {
+        progFile.toFile().delete();
+        pidFile.toFile().delete();
+        if (compiler != null && compiler.getProfileDir() != null) {
+          FileUtils.deleteQuietly(new File(compiler.getProfileDir()));
+        }
+      }
+    }
   }
 
   public static void main(String[] args) throws Exception {
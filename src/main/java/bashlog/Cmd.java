@@ -1,12 +1,15 @@
 package bashlog;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 
 import common.parser.Program;
+import common.plan.optimizer.ReorderJoinCost;
 
 /** Command line program to translate a bashlog datalog program to a bash script. */
 public class Cmd {
@@ -20,11 +23,38 @@ public class Cmd {
     @Parameter(names = { "--plan" }, description = "print plan")
     public boolean debug;
 
+    @Parameter(names = "--optimizer-stats", description = "print the time spent by each optimizer to stderr")
+    private boolean optimizerStats;
+
     @Parameter(names = "--query-file", description = "a Bash Datalog query file, which contains datalog rules")
     private String queryFile;
 
     @Parameter(names = "--query-pred", description = "the predicate that should be evaluated")
     private String queryPredicate;
+
+    @Parameter(names = "--cost-based-join-order", description = "order joins by the estimated size of intermediate results, using statistics of the input files")
+    private boolean costBasedJoinOrder;
+
+    @Parameter(names = "--profile", description = "let the script write row counts and timings of every operator to this directory")
+    private String profileDir;
+
+    @Parameter(names = "--sort-cache", description = "directory where sorted input files are stored, and reused by later runs while the input files do not change")
+    private String sortCache;
+
+    @Parameter(names = "--compress-tmp", description = "compress temporary files (with zstd, lz4, or gzip)")
+    private boolean compressTmp;
+
+    @Parameter(names = "--dictionary-encoding", description = "replace the values by integer identifiers during the evaluation")
+    private boolean dictionaryEncoding;
+
+    @Parameter(names = "--cores", description = "number of cores for the sort commands; they are shared according to the estimated input sizes")
+    private Integer cores;
+
+    @Parameter(names = "--sort-memory", description = "memory for the sort commands, e.g., 80% or 16G; it is shared according to the estimated input sizes")
+    private String sortMemory;
+
+    @Parameter(names = { "--temp-dir", "-T" }, description = "directory for temporary files of sort; repeat to spread them over several disks")
+    private List<String> tempDirs = new ArrayList<>();
   }
 
   public static void main(String[] argv) throws IOException {
@@ -55,8 +85,30 @@ public class Cmd {
       if(args.debug) {
         bc.enableDebug();
       }
+      if (args.costBasedJoinOrder) {
+        bc.setJoinOrder(new ReorderJoinCost());
+      }
+      if (args.profileDir != null) {
+        bc.enableProfiling(args.profileDir);
+      }
+      if (args.sortCache != null) {
+        bc.setSortCache(args.sortCache);
+      }
+      if (args.compressTmp) {
+        bc.setCompressTmp(true);
+      }
+      if (args.dictionaryEncoding) {
+        bc.setDictionaryEncoding(true);
+      }
+      if (args.cores != null || args.sortMemory != null || !args.tempDirs.isEmpty()) {
+        int cores = args.cores != null ? args.cores : Runtime.getRuntime().availableProcessors();
+        bc.setResources(new ResourceBudget(cores, args.sortMemory != null ? args.sortMemory : "80%", args.tempDirs));
+      }
       String bash = bc.compile("", "", false);
       System.out.println(bash);
+      if (args.optimizerStats) {
+        System.err.println(bc.optimizerStatistics());
+      }
       if (args.debug) {
         System.out.println(bc.debugInfo());
       }
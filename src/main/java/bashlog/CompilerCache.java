@@ -0,0 +1,223 @@
+package bashlog;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.parser.BashRule;
+import common.parser.Program;
+import common.parser.Rule;
+import common.plan.node.BashNode;
+import common.plan.optimizer.Optimizer;
+import common.plan.optimizer.ReorderJoinCost;
+import common.plan.optimizer.ReorderJoinLinear;
+import common.statistics.StatisticsCollector;
+
+/**
+ * LRU cache of compiled bash scripts. The key is a hash of the rules that the query relation depends on (independent of their order
+ * in the program), the query relation, and the compiler options. The size of the cache is limited by the total length of the
+ * scripts.
+ *
+ * Scripts compiled with a cost-based join order depend on the statistics of the input files, so their key also contains the path,
+ * modification time, and size of every file read with "cat".
+ */
+public class CompilerCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CompilerCache.class);
+
+  /** Default size limit, in characters */
+  public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+
+  private static final CompilerCache DEFAULT = new CompilerCache(DEFAULT_MAX_SIZE);
+
+  private final long maxSize;
+
+  private long size = 0;
+
+  private long hits = 0, misses = 0;
+
+  private final LinkedHashMap<String, String> scripts = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** @param maxSize maximum total length of the cached scripts, in characters */
+  public CompilerCache(long maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /** Cache shared by the evaluator and the web API */
+  public static CompilerCache getDefault() {
+    return DEFAULT;
+  }
+
+  /** Compile a query with the default join order */
+  public String compile(Program program, String query) {
+    return compile(program, query, new ReorderJoinLinear());
+  }
+
+  /**
+   * Compile a query, or return the script from the cache
+   * @param query relation, possibly without arity (see {@link Program#searchRelation(String)})
+   * @param joinOrder see {@link BashlogCompiler#setJoinOrder(Optimizer)}
+   */
+  public String compile(Program program, String query, Optimizer joinOrder) {
+    String relation = program.searchRelation(query);
+    if (relation == null) throw new IllegalArgumentException("relation not found");
+    List<String> relations = Collections.singletonList(relation);
+    String options = joinOrder.getClass().getName();
+    if (joinOrder instanceof ReorderJoinCost) {
+      // join order and hash joins are chosen based on the statistics of the input files
+      options += " " + inputs(program, relations, ((ReorderJoinCost) joinOrder).getStatistics());
+    }
+    String key = key(program, relations, options);
+
+    synchronized (this) {
+      String script = scripts.get(key);
+      if (script != null) {
+        hits++;
+        return script;
+      }
+      misses++;
+    }
+
+    BashlogCompiler bc = BashlogCompiler.prepareQuery(program, relation);
+    bc.setJoinOrder(joinOrder);
+    String script = bc.compile();
+    put(key, script);
+    return script;
+  }
+
+  /**
+   * Compile a script that writes the result of queries[i] to outputFiles[i], or return it from the cache; see
+   * {@link BashlogCompiler#prepareQueries(Program, List, List)}
+   */
+  public String compile(Program program, List<String> queries, List<String> outputFiles) {
+    List<String> relations = new ArrayList<>();
+    for (String query : queries) {
+      String relation = program.searchRelation(query);
+      if (relation == null) throw new IllegalArgumentException("relation not found: " + query);
+      relations.add(relation);
+    }
+    Optimizer joinOrder = new ReorderJoinLinear();
+    String key = key(program, relations, joinOrder.getClass().getName() + " " + outputFiles);
+
+    synchronized (this) {
+      String script = scripts.get(key);
+      if (script != null) {
+        hits++;
+        return script;
+      }
+      misses++;
+    }
+
+    BashlogCompiler bc = BashlogCompiler.prepareQueries(program, relations, outputFiles);
+    bc.setJoinOrder(joinOrder);
+    String script = bc.compile();
+    put(key, script);
+    return script;
+  }
+
+  private synchronized void put(String key, String script) {
+    String old = scripts.put(key, script);
+    if (old != null) {
+      size -= old.length();
+    }
+    size += script.length();
+    Iterator<String> it = scripts.values().iterator();
+    while (size > maxSize && it.hasNext()) {
+      String evicted = it.next();
+      // keep the new script, even if it is larger than the cache
+      if (evicted == script) break;
+      size -= evicted.length();
+      it.remove();
+    }
+    LOG.debug("cached script, {} scripts with {} characters", scripts.size(), size);
+  }
+
+  /** Rules that the relations depend on, directly or indirectly */
+  private static List<Rule> dependencies(Program program, List<String> relations) {
+    List<Rule> rules = new ArrayList<>();
+    Set<String> done = new HashSet<>();
+    Deque<String> todo = new ArrayDeque<>(relations);
+    while (!todo.isEmpty()) {
+      String rel = todo.poll();
+      if (!done.add(rel)) continue;
+      for (Rule r : program.rulesForRelation(rel)) {
+        rules.add(r);
+        todo.addAll(r.getDependencies());
+        if (r instanceof BashRule) {
+          todo.addAll(((BashRule) r).relations);
+        }
+      }
+    }
+    return rules;
+  }
+
+  /** Path, modification time, and size of the files that the relations read with "cat", in a canonical order */
+  static String inputs(Program program, List<String> relations, StatisticsCollector statistics) {
+    Set<String> inputs = new TreeSet<>();
+    for (Rule r : dependencies(program, relations)) {
+      if (!(r instanceof BashRule)) continue;
+      String path = BashNode.getCatFile(((BashRule) r).command);
+      if (path == null) continue;
+      File file = statistics.resolve(path);
+      inputs.add(file.getAbsolutePath() + "\t" + file.lastModified() + "\t" + file.length());
+    }
+    return String.join("\n", inputs);
+  }
+
+  /** Hash of the rules used by the relations, in a canonical order, the relations, and the options */
+  static String key(Program program, List<String> relations, String options) {
+    Set<String> rules = new TreeSet<>();
+    for (Rule r : dependencies(program, relations)) {
+      rules.add(r.toString());
+    }
+
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      for (String rule : rules) {
+        digest.update(rule.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+      }
+      for (String relation : relations) {
+        digest.update((byte) 0);
+        digest.update(relation.getBytes(StandardCharsets.UTF_8));
+      }
+      digest.update((byte) 0);
+      digest.update(options.getBytes(StandardCharsets.UTF_8));
+      StringBuilder sb = new StringBuilder();
+      for (byte b : digest.digest()) {
+        sb.append(String.format("%02x", b));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public synchronized void clear() {
+    scripts.clear();
+    size = 0;
+  }
+
+  /** Number of cached scripts */
+  public synchronized int getEntries() {
+    return scripts.size();
+  }
+
+  /** Total length of the cached scripts, in characters */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+}
@@ -4,6 +4,8 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import bashlog.command.Bash;
+import bashlog.plan.EncodeNode;
+import bashlog.plan.SortOrder;
 import bashlog.translation.BashTranslator;
 import common.plan.node.*;
 
@@ -18,10 +20,44 @@ public class CompilerInternals extends common.compiler.CompilerInternals<BashTra
 
   Map<String, PlaceholderNode> filenameToPlaceholder = new HashMap<>();
 
+  /** Placeholders whose file is compressed, see {@link #compressTmp()} */
+  private Set<PlaceholderNode> compressedPlaceholders = new HashSet<>();
+
   private boolean parallelMaterialization = true;
 
+  private boolean fifoMaterialization = true;
+
+  /** Whether temporary files are compressed (see BashlogCompiler) */
+  private boolean compressTmp = false;
+
+  /** Whether materialized plans may be passed to their uses through named pipes, see the materialization translator */
+  public boolean fifoMaterialization() {
+    return fifoMaterialization;
+  }
+
+  /**
+   * Whether materialized plans and the relations of recursions are stored compressed. Write them with compress_tmp, and register
+   * them with {@link #registerPlaceholder(PlaceholderNode, String, boolean)}.
+   */
+  public boolean compressTmp() {
+    return compressTmp;
+  }
+
+  void enableCompressTmp() {
+    compressTmp = true;
+  }
+
+  /** Whether sorted base relations are stored in the sort cache directory (see BashlogCompiler) */
+  private boolean sortCache = false;
+
+  /** Options of the sort commands, see {@link ResourceBudget} */
+  private Map<PlanNode, String> sortOptions = Collections.emptyMap();
+
   Map<PlanNode, Bash> cache = new HashMap<>();
 
+  /** Operators that report their output to the profile directory, the index in the list is used as identifier */
+  private List<PlanNode> profiledNodes = null;
+
   /** 
    * Constructor
    * @param translators map from a node class to its translator
@@ -36,12 +72,69 @@ public class CompilerInternals extends common.compiler.CompilerInternals<BashTra
     return parallelMaterialization;
   }
 
+  /** Whether sorted base relations are stored in the sort cache directory */
+  public boolean sortCache() {
+    return sortCache;
+  }
+
+  void enableSortCache() {
+    sortCache = true;
+  }
+
+  /** Options for the sort command of a sort or union node (buffer size, threads, temporary directories); empty if not set */
+  public String sortOptions(PlanNode node) {
+    return sortOptions.getOrDefault(node, "");
+  }
+
+  void setSortOptions(Map<PlanNode, String> sortOptions) {
+    this.sortOptions = sortOptions;
+  }
+
+  /** Wrap the output of every operator with a profiling function (see BashlogCompiler) */
+  void enableProfiling() {
+    profiledNodes = new ArrayList<>();
+  }
+
+  /** Profiled plan nodes, the index is the identifier used in the profile directory */
+  List<PlanNode> getProfiledNodes() {
+    return profiledNodes;
+  }
+
+  /** Count the rows and measure the time of the output of the snippet */
+  private Bash profile(PlanNode planNode, Bash snippet) {
+    // files are just read, and materializations output the result of their main plan
+    if (snippet instanceof Bash.BashFile || planNode instanceof MaterializationNode || planNode instanceof MultiOutputNode
+        || planNode instanceof EncodeNode) {
+      return snippet;
+    }
+    int id = profiledNodes.size();
+    profiledNodes.add(planNode);
+    Bash.Pipe result = new Bash.Pipe(snippet.wrap("{ ", "\n}"));
+    result.cmd("prof_node").arg(Integer.toString(id));
+    return result;
+  }
+
+  /** Order of the output of the snippet of a plan node */
+  public SortOrder sortOrder(PlanNode node) {
+    return SortOrder.of(node, placeholderToParent);
+  }
+
   /** Indicates that plan *node* should take its input from *file* */
   public void registerPlaceholder(PlaceholderNode node, String file) {
     placeholderToFilename.put(node, file);
     filenameToPlaceholder.put(file, node);
   }
 
+  /** Indicates that plan *node* should take its input from *file*, which might have been written by compress_tmp */
+  public void registerPlaceholder(PlaceholderNode node, String file, boolean compressed) {
+    registerPlaceholder(node, file);
+    if (compressed) {
+      compressedPlaceholders.add(node);
+    } else {
+      compressedPlaceholders.remove(node);
+    }
+  }
+
   /** Next index for temporary files (materialized, delta, full) */
   public int getNextIndex() {
     return tmpFileIndex.getAndIncrement();
@@ -104,6 +197,9 @@ public class CompilerInternals extends common.compiler.CompilerInternals<BashTra
     bashlog.translation.BashTranslator t = translators.get(planNode.getClass());
     if (t != null) {
       Bash result = waitFor(t.translate(planNode, this), planNode.children());
+      if (profiledNodes != null) {
+        result = profile(planNode, result);
+      }
       cache.put(planNode, result);
       return result;
     }
@@ -117,6 +213,9 @@ public class CompilerInternals extends common.compiler.CompilerInternals<BashTra
         throw new IllegalStateException("no file assigned to " + planNode.operatorString() + " for " + parent.operatorString());
       }
       Bash result = new Bash.BashFile(file);
+      if (compressedPlaceholders.contains(planNode)) {
+        result = new Bash.Command("decompress_tmp").file(file);
+      }
       cache.put(planNode, result);
       return result;
     }
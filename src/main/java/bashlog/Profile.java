@@ -0,0 +1,139 @@
+package bashlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+
+import common.plan.node.PlaceholderNode;
+import common.plan.node.PlanNode;
+
+/**
+ * Row counts and timings of the operators of a bash script, compiled with {@link BashlogCompiler#enableProfiling(String)}.
+ * Times are in seconds, relative to the start of the script.
+ */
+public class Profile {
+
+  /** Measurements of one operator */
+  public static class Operator {
+
+    long rows, bytes;
+
+    int invocations;
+
+    double start = Double.MAX_VALUE, firstRow = Double.MAX_VALUE, end = 0, busy = 0;
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    /** Number of executions; operators in recursions are executed once per iteration */
+    public int getInvocations() {
+      return invocations;
+    }
+
+    public double getStart() {
+      return start;
+    }
+
+    /** Time when the first row was produced, or NaN if there was no output */
+    public double getFirstRow() {
+      return firstRow == Double.MAX_VALUE ? Double.NaN : firstRow;
+    }
+
+    public double getEnd() {
+      return end;
+    }
+
+    /** Sum of the wall times of all invocations */
+    public double getWallTime() {
+      return busy;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("rows %d, bytes %d, time %.3fs [%.3fs - %.3fs]", rows, bytes, busy, start, end));
+      if (invocations > 1) sb.append(", ").append(invocations).append("x");
+      return sb.toString();
+    }
+  }
+
+  private final PlanNode plan;
+
+  private final Map<PlanNode, Operator> operators = new HashMap<>();
+
+  private Profile(PlanNode plan) {
+    this.plan = plan;
+  }
+
+  /** Read the profile directory of a script that was generated by the compiler */
+  public static Profile read(File dir, BashlogCompiler compiler) throws IOException {
+    List<PlanNode> nodes = compiler.getProfiledNodes();
+    if (nodes == null) {
+      throw new IllegalStateException("profiling was not enabled when compiling the script");
+    }
+    Profile result = new Profile(compiler.getPlan());
+    File startFile = new File(dir, "start");
+    long scriptStart = startFile.exists() ? Long.parseLong(new String(Files.readAllBytes(startFile.toPath())).trim()) : 0;
+
+    for (int i = 0; i < nodes.size(); i++) {
+      File rowsFile = new File(dir, i + ".rows"), timeFile = new File(dir, i + ".time");
+      if (!timeFile.exists()) {
+        // operator was not executed, e.g., because the script was stopped
+        continue;
+      }
+      Operator op = result.operators.computeIfAbsent(nodes.get(i), k -> new Operator());
+      if (rowsFile.exists()) {
+        for (String line : Files.readAllLines(rowsFile.toPath())) {
+          String[] parts = line.split("\t");
+          op.rows += Long.parseLong(parts[0]);
+          op.bytes += Long.parseLong(parts[1]);
+        }
+      }
+      for (String line : Files.readAllLines(timeFile.toPath())) {
+        String[] parts = line.split("\t");
+        long start = Long.parseLong(parts[0]), first = Long.parseLong(parts[1]), end = Long.parseLong(parts[2]);
+        op.invocations++;
+        op.start = Math.min(op.start, (start - scriptStart) * 1e-9);
+        if (first > 0) op.firstRow = Math.min(op.firstRow, (first - scriptStart) * 1e-9);
+        op.end = Math.max(op.end, (end - scriptStart) * 1e-9);
+        op.busy += (end - start) * 1e-9;
+      }
+    }
+    return result;
+  }
+
+  /** Measurements of a node, or null if it was not profiled */
+  public Operator get(PlanNode node) {
+    return operators.get(node);
+  }
+
+  /** Rows read by the node, i.e., the sum of the output rows of its profiled children */
+  public long getRowsIn(PlanNode node) {
+    long rows = 0;
+    for (PlanNode child : node.children()) {
+      Operator op = operators.get(child);
+      rows += op == null ? getRowsIn(child) : op.rows;
+    }
+    return rows;
+  }
+
+  /** Plan annotated with the measurements of each operator, similar to EXPLAIN ANALYZE */
+  public String explain() {
+    return plan.toPrettyString((node, str) -> {
+      Operator op = operators.get(node);
+      if (op == null) return str;
+      return str + "  (in " + getRowsIn(node) + ", out " + op + ")";
+    }, PlaceholderNode.placeholderToParentMap(plan));
+  }
+
+  @Override
+  public String toString() {
+    return explain();
+  }
+}
@@ -0,0 +1,136 @@
+package bashlog;
+
+import java.util.*;
+
+import bashlog.plan.OutputNode;
+import bashlog.plan.SortNode;
+import bashlog.plan.SortOrder;
+import common.Tools;
+import common.plan.node.PlaceholderNode;
+import common.plan.node.PlanNode;
+import common.plan.node.UnionNode;
+import common.statistics.CardinalityEstimator;
+
+/**
+ * Resources available to the sort commands of a script: cores, memory, and directories for temporary files. Sorts which might run
+ * at the same time (e.g., the inputs of a join) share the cores and the memory, proportionally to the estimated size of their
+ * input. The temporary directories are used by every sort, starting with a different directory for each sort.
+ */
+public class ResourceBudget {
+
+  /** GNU sort uses at most 8 threads by default; more threads rarely pay off */
+  private static final int MAX_PARALLEL = 8;
+
+  /** Minimum number of rows assumed for the input of a sort, so that small sorts still get a share */
+  private static final double MIN_ROWS = 1000;
+
+  private final int cores;
+
+  /** Memory in KiB, or in percent of the main memory */
+  private final long memory;
+
+  private final boolean memoryPercent;
+
+  private final List<String> tempDirs;
+
+  /**
+   * @param cores number of cores
+   * @param memory memory for sorting, as a percentage of the main memory (e.g., "80%") or a size with suffix K, M, G, or T
+   * @param tempDirs directories for temporary files, ideally on different disks; empty to use the default of sort
+   */
+  public ResourceBudget(int cores, String memory, List<String> tempDirs) {
+    if (cores < 1) throw new IllegalArgumentException("need at least one core");
+    this.cores = cores;
+    this.tempDirs = new ArrayList<>(tempDirs);
+    memory = memory.trim().toUpperCase();
+    memoryPercent = memory.endsWith("%");
+    try {
+      if (memoryPercent) {
+        this.memory = Long.parseLong(memory.substring(0, memory.length() - 1));
+      } else {
+        int shift = "KMGT".indexOf(memory.charAt(memory.length() - 1));
+        String number = shift >= 0 ? memory.substring(0, memory.length() - 1) : memory;
+        // like sort, a number without suffix is in KiB
+        this.memory = Long.parseLong(number) << (10 * Math.max(0, shift));
+      }
+    } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("invalid memory size " + memory, e);
+    }
+    if (this.memory <= 0) throw new IllegalArgumentException("invalid memory size " + memory);
+  }
+
+  public int getCores() {
+    return cores;
+  }
+
+  public List<String> getTempDirs() {
+    return Collections.unmodifiableList(tempDirs);
+  }
+
+  /**
+   * Options for each sort command in the plan. The options use the variables sort_buffer and sort_parallel, which are set if the
+   * sort command supports the corresponding option.
+   */
+  Map<PlanNode, String> allocate(PlanNode root, CardinalityEstimator estimator) {
+    // binds the estimates of materialized plans to their placeholders
+    estimator.rows(root);
+    Map<PlaceholderNode, PlanNode> placeholderToParent = PlaceholderNode.placeholderToParentMap(root);
+    Map<PlanNode, Double> weights = new LinkedHashMap<>();
+    collectSorts(root, estimator, placeholderToParent, weights);
+    double total = Math.max(1, concurrentWeight(root, weights));
+
+    Map<PlanNode, String> result = new HashMap<>();
+    int i = 0;
+    for (Map.Entry<PlanNode, Double> e : weights.entrySet()) {
+      double share = e.getValue() / total;
+      StringBuilder sb = new StringBuilder();
+      if (memoryPercent) {
+        sb.append("${sort_buffer:+--buffer-size=").append(Math.max(1, (long) (memory * share))).append("%}");
+      } else {
+        sb.append("${sort_buffer:+--buffer-size=").append(Math.max(1024, (long) (memory * share))).append("K}");
+      }
+      long parallel = Math.max(1, Math.min(Math.min(cores, MAX_PARALLEL), Math.round(cores * share)));
+      sb.append(" ${sort_parallel:+--parallel=").append(parallel).append("}");
+      for (int j = 0; j < tempDirs.size(); j++) {
+        sb.append(" -T '").append(tempDirs.get((i + j) % tempDirs.size()).replace("'", "'\\''")).append("'");
+      }
+      result.put(e.getKey(), sb.toString());
+      i++;
+    }
+    return result;
+  }
+
+  /** Sort commands which need memory, i.e., sort nodes, and unions that cannot merge their inputs */
+  private static void collectSorts(PlanNode p, CardinalityEstimator estimator, Map<PlaceholderNode, PlanNode> placeholderToParent,
+      Map<PlanNode, Double> weights) {
+    if (weights.containsKey(p)) return;
+    boolean sorts = p instanceof SortNode;
+    if (p instanceof UnionNode && p.children().size() > 0) {
+      SortOrder sorted = new SortOrder(Tools.sequence(p.getArity()), false);
+      sorts = !p.children().stream().allMatch(c -> SortOrder.of(c, placeholderToParent).satisfies(sorted));
+    }
+    if (sorts) {
+      weights.put(p, Math.max(MIN_ROWS, estimator.rows(p)));
+    }
+    p.children().forEach(c -> collectSorts(c, estimator, placeholderToParent, weights));
+  }
+
+  /**
+   * Maximal weight of the sorts that run at the same time. A sort reads its whole input before it outputs anything, so it does not
+   * compete with the sorts in its input for memory. Outputs are written one after the other.
+   */
+  private static double concurrentWeight(PlanNode p, Map<PlanNode, Double> weights) {
+    double children;
+    if (p instanceof OutputNode) {
+      children = p.children().stream().mapToDouble(c -> concurrentWeight(c, weights)).max().orElse(0);
+    } else {
+      children = p.children().stream().mapToDouble(c -> concurrentWeight(c, weights)).sum();
+    }
+    return Math.max(weights.getOrDefault(p, 0.), children);
+  }
+
+  @Override
+  public String toString() {
+    return cores + " cores, " + (memoryPercent ? memory + "%" : memory + "K") + " memory, temporary directories " + tempDirs;
+  }
+}
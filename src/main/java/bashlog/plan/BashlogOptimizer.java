@@ -50,6 +50,21 @@ public class BashlogOptimizer implements Optimizer {
           }
           return new SortJoinNode(sj.getLeft(), sj.getRight(), sj.getLeftProjection(), sj.getRightProjection(), projection);
         }
+        if (p.getTable() instanceof HashJoinNode && !p.hasConstants()) {
+          int[] projection = Arrays.copyOf(p.getProjection(), p.getProjection().length);
+          HashJoinNode hj = (HashJoinNode) p.getTable();
+          for (int i = 0; i < projection.length; i++) {
+            projection[i] = hj.getOutputProjection()[projection[i]];
+          }
+          if (hj instanceof HashAntiJoinNode) {
+            return new HashAntiJoinNode(hj.getLeft(), hj.getRight(), hj.getLeftProjection(), projection);
+          }
+          if (Arrays.stream(projection).allMatch(i -> i < hj.getLeft().getArity())) {
+            // only columns of the left input are used
+            return new HashSemiJoinNode(hj.getLeft(), hj.getRight(), hj.getLeftProjection(), hj.getRightProjection(), projection);
+          }
+          return new HashJoinNode(hj.getLeft(), hj.getRight(), hj.getLeftProjection(), hj.getRightProjection(), projection);
+        }
       }
       return n;
     });
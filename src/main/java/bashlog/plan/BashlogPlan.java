@@ -5,9 +5,38 @@ import java.util.Collection;
 import common.Tools;
 import common.plan.node.*;
 import common.plan.optimizer.Optimizer;
+import common.statistics.CardinalityEstimator;
+import common.statistics.StatisticsCollector;
 
 public class BashlogPlan implements Optimizer {
 
+  /** Maximum estimated number of rows of the build side of a hash join */
+  public static final double HASH_JOIN_MAX_ROWS = 100_000;
+
+  /** Statistics of the input files, or null if only facts can be estimated */
+  private final StatisticsCollector statistics;
+
+  private final double hashJoinMaxRows;
+
+  private CardinalityEstimator estimator;
+
+  public BashlogPlan() {
+    this(null);
+  }
+
+  public BashlogPlan(StatisticsCollector statistics) {
+    this(statistics, HASH_JOIN_MAX_ROWS);
+  }
+
+  /**
+   * @param statistics statistics of input files for choosing hash joins, or null
+   * @param hashJoinMaxRows use a hash join if one input is estimated to have at most that many rows; 0 to disable hash joins
+   */
+  public BashlogPlan(StatisticsCollector statistics, double hashJoinMaxRows) {
+    this.statistics = statistics;
+    this.hashJoinMaxRows = hashJoinMaxRows;
+  }
+
   /** Adds extra column with dummy value */
   private PlanNode prepareSortCrossProduct(PlanNode p) {
     int[] proj = new int[p.getArity() + 1];
@@ -35,11 +64,38 @@ public class BashlogPlan implements Optimizer {
     return new SortNode(c, new int[] { p.getArity() });
   }
 
+  /** Whether the plan is small enough for the build side of a hash join */
+  private boolean isSmall(PlanNode p) {
+    return estimator.isKnown(p) && estimator.rows(p) <= hashJoinMaxRows;
+  }
+
+  /**
+   * Replace a join with a hash join if one of its inputs is small. The sizes are estimated on the original plan.
+   * @return hash join, or null if the inputs are too large or unknown
+   */
+  private PlanNode hashJoin(JoinNode original, JoinNode joinNode) {
+    if (joinNode.getLeftProjection().length == 0) return null;
+    boolean rightSmall = isSmall(original.getRight()), leftSmall = isSmall(original.getLeft());
+    if (rightSmall && (!leftSmall || estimator.rows(original.getRight()) <= estimator.rows(original.getLeft()))) {
+      return new HashJoinNode(joinNode.getLeft(), joinNode.getRight(), joinNode.getLeftProjection(), joinNode.getRightProjection());
+    } else if (leftSmall) {
+      // build the hash table from the left input, and restore the order of the columns
+      int leftArity = joinNode.getLeft().getArity(), rightArity = joinNode.getRight().getArity();
+      int[] out = Tools.concat(Tools.sequence(rightArity, rightArity + leftArity), Tools.sequence(rightArity));
+      return new HashJoinNode(joinNode.getRight(), joinNode.getLeft(), joinNode.getRightProjection(), joinNode.getLeftProjection(), out);
+    }
+    return null;
+  }
+
   /** Replace certain common.plan.* nodes with their bashlog implementations */
-  private PlanNode transform(PlanNode p) {
-    if (p instanceof JoinNode) {
-      // replace join node with sort join node
+  private PlanNode transform(PlanNode original, PlanNode p) {
+    if (p instanceof JoinNode && original instanceof JoinNode) {
       JoinNode joinNode = (JoinNode) p;
+      PlanNode hashJoin = hashJoin((JoinNode) original, joinNode);
+      if (hashJoin != null) {
+        return hashJoin;
+      }
+      // replace join node with sort join node
       if (joinNode.getLeftProjection().length == 0) {
         // no join condition, so do a cross product
         // sort input and add a dummy column
@@ -72,6 +128,10 @@ public class BashlogPlan implements Optimizer {
 
     } else if (p instanceof AntiJoinNode) {
       AntiJoinNode ajn = (AntiJoinNode) p;
+      if (original instanceof AntiJoinNode && isSmall(((AntiJoinNode) original).getRight())) {
+        // keep the negated relation in memory, and stream the left input
+        return new HashAntiJoinNode(ajn.getLeft(), ajn.getRight(), ajn.getLeftProjection());
+      }
       PlanNode left = prepareSortJoin(ajn.getLeft(), ajn.getLeftProjection());
       PlanNode right = prepareSortJoin(ajn.getRight(), Tools.sequence(ajn.getRight().getArity()));
 
@@ -102,6 +162,7 @@ public class BashlogPlan implements Optimizer {
 
   @Override
   public PlanNode apply(PlanNode t) {
-    return t.transform(this::transform);
+    estimator = new CardinalityEstimator(statistics);
+    return t.transform((original, p, path) -> transform(original, p));
   }
 }
@@ -12,6 +12,8 @@ public class CombinedColumnNode implements PlanNode {
 
   final int[] columns;
 
+  private int hash;
+
   public CombinedColumnNode(PlanNode child, int[] columns) {
     this.child = child;
     this.columns = columns;
@@ -40,7 +42,10 @@ public class CombinedColumnNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return child.hashCode() ^ Arrays.hashCode(columns);
+    if (hash == 0) {
+      hash = child.hashCode() ^ Arrays.hashCode(columns);
+    }
+    return hash;
   }
 
   @Override
@@ -50,7 +55,7 @@ public class CombinedColumnNode implements PlanNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       return fn.apply(this, new CombinedColumnNode(child.transform(fn, originalPath), columns), originalPath);
@@ -0,0 +1,79 @@
+package bashlog.plan;
+
+import java.util.*;
+
+import common.Tools;
+import common.plan.node.PlanNode;
+
+/** Replaces the identifiers of a dictionary encoded relation by their values, and sorts the result (see {@link DictionaryEncoding}) */
+public class DecodeNode implements PlanNode {
+
+  private final PlanNode child;
+
+  private final String dictFile;
+
+  public DecodeNode(PlanNode child, String dictFile) {
+    this.child = child;
+    this.dictFile = dictFile;
+  }
+
+  @Override
+  public int getArity() {
+    return child.getArity();
+  }
+
+  public PlanNode getTable() {
+    return child;
+  }
+
+  /** File with lines "identifier TAB value" */
+  public String getDictFile() {
+    return dictFile;
+  }
+
+  @Override
+  public String toString() {
+    return toPrettyString();
+  }
+
+  @Override
+  public String operatorString() {
+    return "decode " + dictFile;
+  }
+
+  @Override
+  public List<PlanNode> children() {
+    return Arrays.asList(child);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, Collections.emptyMap());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    DecodeNode node = (DecodeNode) obj;
+    return dictFile.equals(node.dictFile) && child.equals(node.child, assumedEqualities);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(child, dictFile);
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      return fn.apply(this, new DecodeNode(child.transform(fn, originalPath), dictFile), originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+package bashlog.plan;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.plan.node.*;
+import common.plan.optimizer.Optimizer;
+
+/**
+ * Replace the values of the relations by integer identifiers, so that sort, join, and awk process shorter keys. The input
+ * relations are encoded at the beginning of the script ({@link EncodeNode}), and the results are decoded at the end
+ * ({@link DecodeNode}). Constants of the plan (filters, projections, facts) get the identifiers 0, 1, ... at compile time, further
+ * values are numbered by the script.
+ *
+ * Bash commands that read other relations would see the identifiers instead of the values, so plans with such commands are not
+ * encoded. Needs to run last, as the identifiers do not preserve the order of the values.
+ */
+public class DictionaryEncoding implements Optimizer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DictionaryEncoding.class);
+
+  /** File that stores the dictionary, see {@link DecodeNode#getDictFile()} */
+  public static final String DICT_FILE = "tmp/dict";
+
+  private Map<String, String> constants;
+
+  private Map<PlanNode, String> inputs;
+
+  /** Whether the plan has an output node, whose plans were decoded */
+  private boolean decodedOutput;
+
+  @Override
+  public PlanNode apply(PlanNode t) {
+    if (hasBashInput(t)) {
+      LOG.warn("not using dictionary encoding, as a bash command reads other relations");
+      return t;
+    }
+    constants = new LinkedHashMap<>();
+    inputs = new LinkedHashMap<>();
+    decodedOutput = false;
+    PlanNode main = t.transform(this::transform);
+
+    // decode the result; the results of an output node were decoded by transform(...)
+    if (!decodedOutput) {
+      main = decode(main);
+    }
+    return new EncodeNode(main, new ArrayList<>(inputs.keySet()), new ArrayList<>(inputs.values()), constants, DICT_FILE);
+  }
+
+  /** Decode a result; the decoding sorts it */
+  private static PlanNode decode(PlanNode p) {
+    if (p instanceof SortNode && Arrays.equals(((SortNode) p).sortColumns(), common.Tools.sequence(p.getArity()))) {
+      p = ((SortNode) p).getTable();
+    }
+    return new DecodeNode(p, DICT_FILE);
+  }
+
+  private static boolean hasBashInput(PlanNode p) {
+    return (p instanceof BashNode && !p.children().isEmpty()) || p.children().stream().anyMatch(DictionaryEncoding::hasBashInput);
+  }
+
+  private String id(Comparable<?> value) {
+    return constants.computeIfAbsent(value.toString(), v -> Integer.toString(constants.size()));
+  }
+
+  private PlanNode transform(PlanNode p) {
+    if (p instanceof TSVFileNode || p instanceof BashNode) {
+      String file = inputs.computeIfAbsent(p, k -> "tmp/enc" + inputs.size());
+      return new TSVFileNode(file, p.getArity());
+
+    } else if (p instanceof ConstantEqualityFilterNode) {
+      ConstantEqualityFilterNode f = (ConstantEqualityFilterNode) p;
+      return f.getTable().equalityFilter(f.getField(), id(f.getValue()));
+
+    } else if (p instanceof ProjectNode && ((ProjectNode) p).hasConstants()) {
+      ProjectNode proj = (ProjectNode) p;
+      Comparable<?>[] ids = Arrays.stream(proj.getConstants()).map(c -> c == null ? null : id(c)).toArray(Comparable<?>[]::new);
+      return proj.getTable().project(proj.getProjection(), ids);
+
+    } else if (p instanceof FactNode) {
+      List<FactNode> facts = new ArrayList<>();
+      for (Comparable<?>[] fact : ((FactNode) p).getFacts()) {
+        facts.add(new FactNode(Arrays.stream(fact).map(this::id).toArray(Comparable<?>[]::new)));
+      }
+      return new FactNode(facts);
+
+    } else if (p instanceof MultiOutputNode) {
+      // the reused plans are not transformed with the rest of the plan
+      MultiOutputNode mo = (MultiOutputNode) p;
+      return mo.withReusedPlans(mo.reusedPlans().stream().map(r -> r.transform(this::transform)).collect(Collectors.toList()));
+
+    } else if (p instanceof MultiFilterNode) {
+      MultiFilterNode mf = (MultiFilterNode) p;
+      Set<PlanNode> filters = mf.getFilter().stream().map(f -> f.transform(this::transform)).collect(Collectors.toSet());
+      return new MultiFilterNode(filters, mf.getTable(), mf.placeholders().get(0), mf.getArity());
+
+    } else if (p instanceof OutputNode) {
+      // might be below materialization and multi output nodes, which need the encoded values
+      OutputNode out = (OutputNode) p;
+      decodedOutput = true;
+      return new OutputNode(out.getPlans().stream().map(DictionaryEncoding::decode).collect(Collectors.toList()), out.getFiles());
+    }
+    return p;
+  }
+}
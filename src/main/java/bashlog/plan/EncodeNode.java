@@ -0,0 +1,122 @@
+package bashlog.plan;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import common.Tools;
+import common.plan.node.PlanNode;
+
+/**
+ * Encodes the values of the input relations as integer identifiers before the main plan is executed (see
+ * {@link DictionaryEncoding}). The encoded inputs are written to files, which are read by the main plan. The constants of the
+ * program get fixed identifiers, so that the plan can refer to them.
+ */
+public class EncodeNode implements PlanNode {
+
+  private final PlanNode mainPlan;
+
+  private final List<PlanNode> inputs;
+
+  private final List<String> files;
+
+  private final Map<String, String> constants;
+
+  private final String dictFile;
+
+  /**
+   * @param inputs relations to encode
+   * @param files file for each encoded input
+   * @param constants value to identifier, identifiers are 0, 1, ...
+   * @param dictFile the script writes the dictionary to this file, see {@link DecodeNode#getDictFile()}
+   */
+  public EncodeNode(PlanNode mainPlan, List<PlanNode> inputs, List<String> files, Map<String, String> constants, String dictFile) {
+    if (inputs.size() != files.size()) {
+      throw new IllegalArgumentException("need one file per input");
+    }
+    this.mainPlan = mainPlan;
+    this.inputs = inputs;
+    this.files = files;
+    this.constants = constants;
+    this.dictFile = dictFile;
+  }
+
+  public PlanNode getMainPlan() {
+    return mainPlan;
+  }
+
+  public List<PlanNode> getInputs() {
+    return Collections.unmodifiableList(inputs);
+  }
+
+  public List<String> getFiles() {
+    return Collections.unmodifiableList(files);
+  }
+
+  public Map<String, String> getConstants() {
+    return Collections.unmodifiableMap(constants);
+  }
+
+  public String getDictFile() {
+    return dictFile;
+  }
+
+  @Override
+  public int getArity() {
+    return mainPlan.getArity();
+  }
+
+  @Override
+  public String toString() {
+    return toPrettyString();
+  }
+
+  @Override
+  public String operatorString() {
+    return "encode " + files + " with " + constants.size() + " constants";
+  }
+
+  @Override
+  public List<PlanNode> children() {
+    List<PlanNode> result = new ArrayList<>(inputs);
+    result.add(mainPlan);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, Collections.emptyMap());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    EncodeNode node = (EncodeNode) obj;
+    if (!files.equals(node.files) || !constants.equals(node.constants) || !dictFile.equals(node.dictFile)) return false;
+    for (int i = 0; i < inputs.size(); i++) {
+      if (!inputs.get(i).equals(node.inputs.get(i), assumedEqualities)) return false;
+    }
+    return mainPlan.equals(node.mainPlan, assumedEqualities);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(mainPlan, inputs, files, constants, dictFile);
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      List<PlanNode> newInputs = inputs.stream().map(p -> p.transform(fn, originalPath)).collect(Collectors.toList());
+      PlanNode newMain = mainPlan.transform(fn, originalPath);
+      PlanNode newNode = newInputs.equals(inputs) && newMain.equals(mainPlan) ? this
+          : new EncodeNode(newMain, newInputs, files, constants, dictFile);
+      return fn.apply(this, newNode, originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+}
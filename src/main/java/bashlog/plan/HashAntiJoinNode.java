@@ -0,0 +1,56 @@
+package bashlog.plan;
+
+import java.util.*;
+
+import common.Tools;
+import common.plan.node.PlanNode;
+
+/** Anti-join with a small right input that is loaded into a hash table; the left input is streamed */
+public class HashAntiJoinNode extends HashJoinNode {
+
+  public HashAntiJoinNode(PlanNode left, PlanNode right, int[] leftJoinProjection) {
+    this(left, right, leftJoinProjection, Tools.sequence(left.getArity()));
+  }
+
+  public HashAntiJoinNode(PlanNode left, PlanNode right, int[] leftJoinProjection, int[] outputProjection) {
+    super(left, right, leftJoinProjection, Tools.sequence(right.getArity()), outputProjection);
+    if (Arrays.stream(outputProjection).anyMatch(i -> i >= left.getArity())) {
+      throw new IllegalArgumentException("anti join can only output columns of the left input");
+    }
+  }
+
+  @Override
+  public String operatorString() {
+    return super.operatorString().replaceFirst("⋈_", "▷_");
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      return fn.apply(this, new HashAntiJoinNode(getLeft().transform(fn, originalPath), getRight().transform(fn, originalPath),
+          getLeftProjection(), outputProjection), originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, new HashMap<>());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    return super.equals(obj, assumedEqualities);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+}
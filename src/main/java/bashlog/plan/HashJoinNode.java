@@ -0,0 +1,72 @@
+package bashlog.plan;
+
+import java.util.*;
+
+import common.Tools;
+import common.plan.node.JoinNode;
+import common.plan.node.PlanNode;
+
+/**
+ * Join an input with a small input that is loaded into a hash table. The inputs need not be sorted, and the join may use several
+ * (or no) columns. The left child is streamed, the right child is the build side.
+ */
+public class HashJoinNode extends JoinNode {
+
+  protected final int[] outputProjection;
+
+  public HashJoinNode(PlanNode left, PlanNode right, int[] leftJoinProjection, int[] rightJoinProjection) {
+    this(left, right, leftJoinProjection, rightJoinProjection, Tools.sequence(left.getArity() + right.getArity()));
+  }
+
+  public HashJoinNode(PlanNode left, PlanNode right, int[] leftJoinProjection, int[] rightJoinProjection, int[] outputProjection) {
+    super(left, right, leftJoinProjection, rightJoinProjection);
+    if (leftJoinProjection.length != rightJoinProjection.length) throw new UnsupportedOperationException("join requires the same number of columns on each child");
+    this.outputProjection = outputProjection;
+  }
+
+  @Override
+  public String operatorString() {
+    return super.operatorString().replaceFirst("_", "_hash_") + " out " + Arrays.toString(outputProjection);
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      return fn.apply(this, new HashJoinNode(getLeft().transform(fn, originalPath), getRight().transform(fn, originalPath), getLeftProjection(),
+          getRightProjection(), outputProjection), originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+
+  public int[] getOutputProjection() {
+    return outputProjection;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, new HashMap<>());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    HashJoinNode node = (HashJoinNode) obj;
+    return super.equals(obj, assumedEqualities) && Arrays.equals(outputProjection, node.outputProjection);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode() ^ Arrays.hashCode(outputProjection);
+  }
+
+  @Override
+  public int getArity() {
+    return outputProjection.length;
+  }
+
+}
@@ -0,0 +1,55 @@
+package bashlog.plan;
+
+import java.util.*;
+
+import common.Tools;
+import common.plan.node.PlanNode;
+
+/**
+ * Semi-join with a small right input that is loaded into a hash table; the left input is streamed. Equivalent to a hash join whose
+ * output only contains columns of the left input, but every left row is output at most once.
+ */
+public class HashSemiJoinNode extends HashJoinNode {
+
+  public HashSemiJoinNode(PlanNode left, PlanNode right, int[] leftJoinProjection, int[] rightJoinProjection, int[] outputProjection) {
+    super(left, right, leftJoinProjection, rightJoinProjection, outputProjection);
+    if (Arrays.stream(outputProjection).anyMatch(i -> i >= left.getArity())) {
+      throw new IllegalArgumentException("semi join can only output columns of the left input");
+    }
+  }
+
+  @Override
+  public String operatorString() {
+    return super.operatorString().replaceFirst("⋈_", "⋉_");
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      return fn.apply(this, new HashSemiJoinNode(getLeft().transform(fn, originalPath), getRight().transform(fn, originalPath),
+          getLeftProjection(), getRightProjection(), outputProjection), originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, new HashMap<>());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    return super.equals(obj, assumedEqualities);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+}
@@ -0,0 +1,95 @@
+package bashlog.plan;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import common.Tools;
+import common.plan.node.PlanNode;
+
+/**
+ * Writes the results of several plans to files (or named pipes). Used as root for evaluating several queries with one script, so
+ * that the optimizers can share subplans between the queries.
+ */
+public class OutputNode implements PlanNode {
+
+  private final List<PlanNode> plans;
+
+  private final List<String> files;
+
+  private int hash;
+
+  public OutputNode(List<PlanNode> plans, List<String> files) {
+    if (plans.size() != files.size()) {
+      throw new IllegalArgumentException("need one output file per plan");
+    }
+    this.plans = plans;
+    this.files = files;
+  }
+
+  public List<PlanNode> getPlans() {
+    return Collections.unmodifiableList(plans);
+  }
+
+  public List<String> getFiles() {
+    return Collections.unmodifiableList(files);
+  }
+
+  @Override
+  public int getArity() {
+    return 0;
+  }
+
+  @Override
+  public String toString() {
+    return toPrettyString();
+  }
+
+  @Override
+  public String operatorString() {
+    return "output " + files;
+  }
+
+  @Override
+  public List<PlanNode> children() {
+    return Collections.unmodifiableList(plans);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return equals(obj, Collections.emptyMap());
+  }
+
+  @Override
+  public boolean equals(Object obj, Map<PlanNode, PlanNode> assumedEqualities) {
+    if (this == obj) return true;
+    if (!(obj.getClass() == getClass())) {
+      return false;
+    }
+    OutputNode node = (OutputNode) obj;
+    if (!files.equals(node.files)) return false;
+    for (int i = 0; i < plans.size(); i++) {
+      if (!plans.get(i).equals(node.plans.get(i), assumedEqualities)) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    if (hash == 0) {
+      hash = Objects.hash(plans, files);
+    }
+    return hash;
+  }
+
+  @Override
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
+    try {
+      Tools.addLast(originalPath, this);
+      List<PlanNode> newPlans = plans.stream().map(p -> p.transform(fn, originalPath)).collect(Collectors.toList());
+      PlanNode newNode = newPlans.equals(plans) ? this : new OutputNode(newPlans, files);
+      return fn.apply(this, newNode, originalPath);
+    } finally {
+      Tools.removeLast(originalPath);
+    }
+  }
+}
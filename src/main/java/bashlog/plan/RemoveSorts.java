@@ -0,0 +1,55 @@
+package bashlog.plan;
+
+import java.util.Map;
+
+import common.plan.node.*;
+import common.plan.optimizer.Optimizer;
+
+/**
+ * Remove sort nodes whose input is already ordered (see {@link SortOrder}), e.g., the output of a join that is joined again on the
+ * same column, or a union that is sorted again. Needs to run after the optimizers that change the structure of the plan, as they
+ * might replace sorted nodes (e.g., a union by a multi output).
+ */
+public class RemoveSorts implements Optimizer {
+
+  private Map<PlaceholderNode, PlanNode> placeholderToParent;
+
+  @Override
+  public PlanNode apply(PlanNode t) {
+    placeholderToParent = PlaceholderNode.placeholderToParentMap(t);
+    return t.transform(this::transform);
+  }
+
+  private PlanNode transform(PlanNode n) {
+    if (n instanceof SortNode) {
+      SortNode s = (SortNode) n;
+      if (SortOrder.of(s.getTable(), placeholderToParent).satisfies(SortOrder.of(s))) {
+        return s.getTable();
+      }
+    } else if (n instanceof SortJoinNode && ((SortJoinNode) n).getLeftProjection().length > 0) {
+      // join only needs its inputs sorted on the join column
+      SortJoinNode j = (SortJoinNode) n;
+      PlanNode left = joinInput(j.getLeft(), j.getLeftProjection()[0]);
+      PlanNode right = joinInput(j.getRight(), j.getRightProjection()[0]);
+      if (left != j.getLeft() || right != j.getRight()) {
+        if (j instanceof SortAntiJoinNode) {
+          return new SortAntiJoinNode(left, right, j.getLeftProjection(), j.getOutputProjection());
+        }
+        return new SortJoinNode(left, right, j.getLeftProjection(), j.getRightProjection(), j.getOutputProjection());
+      }
+    }
+    return n;
+  }
+
+  /** Remove the sort of a join input, if its input is already sorted on the join column */
+  private PlanNode joinInput(PlanNode input, int column) {
+    if (input instanceof SortNode) {
+      SortNode s = (SortNode) input;
+      SortOrder required = SortOrder.of(s), actual = SortOrder.of(s.getTable(), placeholderToParent);
+      if (actual.isSortedOn(column) && (actual.isDistinct() || !required.isDistinct())) {
+        return s.getTable();
+      }
+    }
+    return input;
+  }
+}
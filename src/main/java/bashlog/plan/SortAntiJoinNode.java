@@ -23,7 +23,7 @@ public class SortAntiJoinNode extends SortJoinNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
     return fn.apply(this,
           new SortAntiJoinNode(getLeft().transform(fn, originalPath), getRight().transform(fn, originalPath), getLeftProjection(),
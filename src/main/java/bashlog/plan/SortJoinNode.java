@@ -28,7 +28,7 @@ public class SortJoinNode extends JoinNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       return fn.apply(this, new SortJoinNode(getLeft().transform(fn, originalPath), getRight().transform(fn, originalPath), getLeftProjection(),
@@ -11,6 +11,8 @@ public class SortNode implements PlanNode {
 
   private final int[] sortColumns;
 
+  private int hash;
+
   public SortNode(PlanNode child, int[] sortColumns) {
     this.child = child;
     //this.sortColumns = sortColumns == null ? Tools.sequence(child.getArity()) : sortColumns;
@@ -62,11 +64,14 @@ public class SortNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return Objects.hash(child, Arrays.hashCode(sortColumns));
+    if (hash == 0) {
+      hash = Objects.hash(child, Arrays.hashCode(sortColumns));
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       return fn.apply(this, new SortNode(child.transform(fn, originalPath), sortColumns), originalPath);
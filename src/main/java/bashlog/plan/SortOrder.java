@@ -0,0 +1,166 @@
+package bashlog.plan;
+
+import java.util.*;
+
+import common.Tools;
+import common.plan.node.*;
+
+/**
+ * Order of the output of a plan node, as produced by the bash translation. The rows are sorted on the columns (primary column first,
+ * with LC_ALL=C), and might additionally be free of duplicates. Rows are assumed to not contain characters smaller than tab, so
+ * that sorting whole lines sorts on all columns.
+ */
+public class SortOrder {
+
+  /** Unknown order */
+  public static final SortOrder NONE = new SortOrder(new int[0], false);
+
+  private final int[] columns;
+
+  private final boolean distinct;
+
+  public SortOrder(int[] columns, boolean distinct) {
+    this.columns = columns;
+    this.distinct = distinct;
+  }
+
+  /** Columns the rows are sorted on, primary column first; empty if unknown */
+  public int[] getColumns() {
+    return columns;
+  }
+
+  /** Whether there are no duplicate rows */
+  public boolean isDistinct() {
+    return distinct;
+  }
+
+  /** Whether the rows are sorted on the column (i.e., it is the primary sort column) */
+  public boolean isSortedOn(int column) {
+    return columns.length > 0 && columns[0] == column;
+  }
+
+  /** Whether this order implies the other order */
+  public boolean satisfies(SortOrder other) {
+    if (other.distinct && !distinct) return false;
+    if (other.columns.length > columns.length) return false;
+    for (int i = 0; i < other.columns.length; i++) {
+      if (columns[i] != other.columns[i]) return false;
+    }
+    return true;
+  }
+
+  /** Sorted on all columns, without duplicates, like the output of sort -u */
+  public static SortOrder full(int arity) {
+    return new SortOrder(Tools.sequence(arity), true);
+  }
+
+  @Override
+  public String toString() {
+    return "sorted " + Arrays.toString(columns) + (distinct ? " distinct" : "");
+  }
+
+  /** Order of the output of the node; the order of placeholders is unknown */
+  public static SortOrder of(PlanNode node) {
+    return of(node, Collections.emptyMap());
+  }
+
+  /**
+   * Order of the output of the node
+   * @param placeholderToParent see {@link PlaceholderNode#placeholderToParentMap(PlanNode)}
+   */
+  public static SortOrder of(PlanNode node, Map<PlaceholderNode, PlanNode> placeholderToParent) {
+    if (node instanceof SortNode) {
+      SortNode s = (SortNode) node;
+      int[] cols = s.sortColumns();
+      if (cols == null) {
+        return full(node.getArity());
+      }
+      // sort -k c compares the line from column c to the end
+      List<Integer> result = new ArrayList<>();
+      for (int col : cols) {
+        for (int i = col; i < node.getArity(); i++) {
+          if (!result.contains(i)) result.add(i);
+        }
+      }
+      boolean uniq = Arrays.stream(Tools.sequence(node.getArity())).allMatch(i -> Arrays.stream(cols).anyMatch(c -> c == i));
+      return new SortOrder(result.stream().mapToInt(i -> i).toArray(), uniq);
+
+    } else if (node instanceof UnionNode) {
+      // sort -u
+      return full(node.getArity());
+
+    } else if (node instanceof RecursionNode) {
+      // output of the full file, see the recursion translator
+      return full(node.getArity());
+
+    } else if (node instanceof PlaceholderNode) {
+      // delta and full files of recursions are sorted, materialized files contain the output of the reused plan
+      PlanNode parent = placeholderToParent.get(node);
+      if (parent instanceof RecursionNode) {
+        return full(node.getArity());
+      } else if (parent instanceof MaterializationNode && ((MaterializationNode) parent).getReuseNode() == node) {
+        return of(((MaterializationNode) parent).getReusedPlan(), placeholderToParent);
+      }
+      return NONE;
+
+    } else if (node instanceof SortJoinNode) {
+      // join outputs the rows in the order of the join column of the left input
+      SortJoinNode j = (SortJoinNode) node;
+      if (j.getLeftProjection().length == 0) return NONE;
+      int leftCol = j.getLeftProjection()[0];
+      int rightCol = j instanceof SortAntiJoinNode ? -1 : j.getLeft().getArity() + j.getRightProjection()[0];
+      int[] out = j.getOutputProjection();
+      for (int i = 0; i < out.length; i++) {
+        if (out[i] == leftCol || out[i] == rightCol) {
+          return new SortOrder(new int[] { i }, false);
+        }
+      }
+      return NONE;
+
+    } else if (node instanceof HashJoinNode) {
+      // the left input is streamed
+      HashJoinNode j = (HashJoinNode) node;
+      SortOrder left = of(j.getLeft(), placeholderToParent);
+      boolean distinct = left.distinct && !(j.getClass() == HashJoinNode.class)
+          && Arrays.equals(j.getOutputProjection(), Tools.sequence(j.getLeft().getArity()));
+      return project(left, j.getOutputProjection(), distinct);
+
+    } else if (node instanceof ProjectNode) {
+      ProjectNode p = (ProjectNode) node;
+      SortOrder child = of(p.getTable(), placeholderToParent);
+      int[] proj = p.getProjection();
+      boolean keepsAll = Arrays.stream(Tools.sequence(p.getTable().getArity())).allMatch(i -> Arrays.stream(proj).anyMatch(c -> c == i));
+      return project(child, proj, child.distinct && keepsAll);
+
+    } else if (node instanceof EqualityFilterNode) {
+      return of(((EqualityFilterNode) node).getTable(), placeholderToParent);
+
+    } else if (node instanceof CombinedColumnNode) {
+      return of(node.children().iterator().next(), placeholderToParent);
+
+    } else if (node instanceof MaterializationNode) {
+      return of(((MaterializationNode) node).getMainPlan(), placeholderToParent);
+
+    } else if (node instanceof MultiOutputNode) {
+      return of(((MultiOutputNode) node).getMainPlan(), placeholderToParent);
+    }
+    return NONE;
+  }
+
+  /** Order after a projection; the order is kept as long as the sort columns are kept */
+  private static SortOrder project(SortOrder child, int[] projection, boolean distinct) {
+    List<Integer> result = new ArrayList<>();
+    for (int col : child.columns) {
+      int pos = -1;
+      for (int i = 0; i < projection.length; i++) {
+        if (projection[i] == col) {
+          pos = i;
+          break;
+        }
+      }
+      if (pos < 0) break;
+      result.add(pos);
+    }
+    return new SortOrder(result.stream().mapToInt(i -> i).toArray(), distinct);
+  }
+}
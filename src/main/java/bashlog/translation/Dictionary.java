@@ -0,0 +1,69 @@
+package bashlog.translation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import bashlog.CompilerInternals;
+import bashlog.command.Bash;
+import bashlog.plan.DecodeNode;
+import bashlog.plan.EncodeNode;
+import common.plan.node.PlanNode;
+
+/**
+ * Translates the nodes of the dictionary encoding. The encoding is one AWK command, which assigns an identifier to every new value
+ * of the inputs, appends it to the dictionary file, and writes the encoded inputs. The decoding loads the dictionary in memory.
+ */
+public class Dictionary implements BashTranslator {
+
+  @Override
+  public Bash translate(PlanNode planNode, CompilerInternals bc) {
+    if (planNode instanceof DecodeNode) {
+      DecodeNode d = (DecodeNode) planNode;
+      Bash.Pipe result = bc.compile(d.getTable()).pipe();
+      result.cmd(AwkHelper.AWK)//
+          .arg("BEGIN { OFS = FS; while ((getline line < \"" + d.getDictFile() + "\") > 0) { p = index(line, FS); "
+              + "v[substr(line, 1, p - 1)] = substr(line, p + 1) } }\n"
+              + "    { for (i = 1; i <= NF; i++) $i = v[$i]; print }")//
+          .arg("'");
+      result.cmd("$sort").arg("-t $'\\t'").arg("-u");
+      return result;
+    }
+
+    EncodeNode e = (EncodeNode) planNode;
+    Bash.CommandSequence result = new Bash.CommandSequence();
+    result.info(planNode, "");
+    Bash.Command touch = result.cmd("touch").file(e.getDictFile());
+    e.getFiles().forEach(touch::file);
+
+    String dict = "\"" + e.getDictFile() + "\"";
+    StringBuilder prog = new StringBuilder("BEGIN { OFS = FS; ");
+    for (Map.Entry<String, String> c : e.getConstants().entrySet()) {
+      prog.append("d[\"").append(AwkHelper.escape(c.getKey())).append("\"] = ").append(c.getValue()).append("; ");
+      prog.append("print ").append(c.getValue()).append(" FS \"").append(AwkHelper.escape(c.getKey())).append("\" > ").append(dict).append("; ");
+    }
+    prog.append("n = ").append(e.getConstants().size()).append(" }\n");
+    prog.append("    { for (i = 1; i <= NF; i++) { if (!($i in d)) { d[$i] = n; print n FS $i > ").append(dict).append("; n++ }; ");
+    prog.append("$i = d[$i] }; print > out }");
+
+    Bash.Command cmd = result.cmd(AwkHelper.AWK).arg(prog.toString()).arg("'");
+    for (int i = 0; i < e.getInputs().size(); i++) {
+      cmd.arg("out=" + e.getFiles().get(i));
+      cmd.file(bc.compile(e.getInputs().get(i)));
+    }
+    if (e.getInputs().isEmpty()) {
+      cmd.arg("/dev/null");
+    }
+    cmd.arg("\n");
+
+    result.other("\n# plan");
+    result.add(bc.compile(e.getMainPlan()));
+    return result;
+  }
+
+  @Override
+  public List<Class<?>> supports() {
+    return Arrays.asList(EncodeNode.class, DecodeNode.class);
+  }
+
+}
@@ -0,0 +1,83 @@
+package bashlog.translation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import bashlog.CompilerInternals;
+import bashlog.command.Bash;
+import bashlog.plan.HashAntiJoinNode;
+import bashlog.plan.HashJoinNode;
+import bashlog.plan.HashSemiJoinNode;
+import common.plan.node.PlanNode;
+
+/**
+ * Translate a hash join to awk. The right input is read into an associative array in the BEGIN block (and removed from the
+ * arguments), without duplicates; then the left input is streamed and joined row by row. Also treats hash anti-joins and semi-joins,
+ * which only need the keys of the right input.
+ */
+public class HashJoin implements BashTranslator {
+
+  @Override
+  public Bash translate(PlanNode planNode, CompilerInternals bc) {
+    HashJoinNode j = (HashJoinNode) planNode;
+    int leftArity = j.getLeft().getArity();
+    boolean keysOnly = j instanceof HashAntiJoinNode || j instanceof HashSemiJoinNode;
+
+    StringBuilder prog = new StringBuilder();
+    prog.append("BEGIN { while ((getline line < ARGV[1]) > 0) { split(line, r, FS); k = ").append(key("r[", j.getRightProjection(), "]"));
+    if (keysOnly) {
+      prog.append("; h[k] = 1 }; ARGV[1] = \"\" }\n");
+    } else {
+      // duplicates of the build side would multiply the output
+      prog.append("; if (!(line in d)) { d[line] = 1; n[k]++; b[k, n[k]] = line } }; ARGV[1] = \"\" }\n");
+    }
+
+    String leftKey = key("$", j.getLeftProjection(), "");
+    if (j instanceof HashAntiJoinNode) {
+      prog.append("!((").append(leftKey).append(") in h) { print ").append(output(j.getOutputProjection(), leftArity)).append(" }");
+    } else if (j instanceof HashSemiJoinNode) {
+      prog.append("((").append(leftKey).append(") in h) { print ").append(output(j.getOutputProjection(), leftArity)).append(" }");
+    } else {
+      prog.append("{ k = ").append(leftKey).append("; if (k in n) for (i = 1; i <= n[k]; i++) { ");
+      prog.append("split(b[k, i], r, FS); print ").append(output(j.getOutputProjection(), leftArity)).append(" } }");
+    }
+
+    Bash.Command result = new Bash.Command(AwkHelper.AWK);
+    result.arg(prog.toString()).arg("'");
+    result.file(bc.compile(j.getRight()));
+    result.file(bc.compile(j.getLeft()));
+    return result;
+  }
+
+  /** Awk expression for the join key, e.g. $1 FS $3 */
+  private static String key(String prefix, int[] cols, String suffix) {
+    if (cols.length == 0) return "\"\"";
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < cols.length; i++) {
+      if (i > 0) sb.append(" FS ");
+      sb.append(prefix).append(cols[i] + 1).append(suffix);
+    }
+    return sb.toString();
+  }
+
+  /** Awk expression for the output row; columns of the right input are taken from array r */
+  private static String output(int[] out, int leftArity) {
+    if (out.length == 0) return "\"\"";
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < out.length; i++) {
+      if (i > 0) sb.append(" FS ");
+      if (out[i] < leftArity) {
+        sb.append("$").append(out[i] + 1);
+      } else {
+        sb.append("r[").append(out[i] - leftArity + 1).append("]");
+      }
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public List<Class<?>> supports() {
+    return Arrays.asList(HashJoinNode.class, HashAntiJoinNode.class, HashSemiJoinNode.class);
+  }
+
+}
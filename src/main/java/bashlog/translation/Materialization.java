@@ -1,16 +1,23 @@
 package bashlog.translation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import bashlog.CompilerInternals;
 import bashlog.command.Bash;
 import bashlog.command.Bash.BashFile;
-import common.plan.node.MaterializationNode;
-import common.plan.node.PlanNode;
+import bashlog.plan.CombinedColumnNode;
+import bashlog.plan.OutputNode;
+import bashlog.plan.SortNode;
+import common.plan.node.*;
 
 /** 
- * Translate a materialization node. The command is just executed and its output stored in a file.
+ * Translate a materialization node. The command is just executed and its output stored in a file (compressed, if enabled).
+ *
+ * If every use of the materialized plan is read completely by a sort, and all uses run at the same time, the output is passed to
+ * the uses with tee and one named pipe per use instead. Sort reads its whole input before it outputs anything, so no use can
+ * block the others. Uses in recursions, in other materializations, or in later commands of the script read from a file.
  */
 public class Materialization implements BashTranslator {
 
@@ -22,31 +29,72 @@ public class Materialization implements BashTranslator {
     Bash.CommandSequence result = new Bash.CommandSequence();
     result.info(planNode, "");
 
+    PlanNode mainPlan = m.getMainPlan();
     Bash reused = bc.compile(m.getReusedPlan());
     if (reused instanceof BashFile) {
       BashFile rf = (BashFile) reused;
       bc.registerPlaceholder(m.getReuseNode(), rf.getPath());
+    } else if (bc.fifoMaterialization() && m.getReuseCount() > 1 && readBySort(mainPlan, m.getReuseNode(), false)) {
+      // give every use its own placeholder and named pipe; a transformation without path visits every occurrence of a subplan
+      List<String> fifos = new ArrayList<>();
+      mainPlan = mainPlan.transform((old, node, path) -> {
+        if (node != m.getReuseNode()) return node;
+        PlaceholderNode use = new PlaceholderNode(node.operatorString(), node.getArity());
+        String fifo = matFile + "_" + (fifos.size() + 1);
+        bc.registerPlaceholder(use, fifo);
+        fifos.add(fifo);
+        return use;
+      }, null);
+      String files = String.join(" ", fifos);
+      String lastFifo = fifos.remove(fifos.size() - 1);
+      reused = reused.wrap("rm -f " + files + "; mkfifo " + files + "; ( ", //
+          " | tee " + String.join(" ", fifos) + " > " + lastFifo + " ) & ");
+      result.add(reused);
     } else {
+      String write = " > " + matFile;
+      if (bc.compressTmp()) {
+        bc.registerPlaceholder(m.getReuseNode(), matFile, true);
+        write = " | compress_tmp" + write;
+      }
       if (bc.parallelMaterialization()) {
         String lockFile = matFile.replaceAll("tmp/", "tmp/lock_");
         reused = reused.wrap("rm -f " + lockFile + "; mkfifo " + lockFile + "; ( ", //
-            " > " + matFile + //
+            write + //
                 "; unlock " + lockFile + //
                 " ) & ");
       } else {
-        reused = reused.wrap("", " > " + matFile);
+        reused = reused.wrap("", write);
       }
       result.add(reused);
     }
 
-    if (!(m.getMainPlan() instanceof MaterializationNode)) {
+    if (!(mainPlan instanceof MaterializationNode)) {
       result.other("\n# plan");
     }
-    result.add(bc.compile(m.getMainPlan()));
+    result.add(bc.compile(mainPlan));
     return result;
 
   }
 
+  /**
+   * Check whether every use of the placeholder in the plan is read completely by a sort, and whether the plan does not execute
+   * the uses one after the other
+   * @param sorted whether the output of the plan is read completely by a sort
+   */
+  private static boolean readBySort(PlanNode p, PlaceholderNode placeholder, boolean sorted) {
+    if (p == placeholder) {
+      return sorted;
+    }
+    if (p instanceof RecursionNode || p instanceof MaterializationNode || p instanceof MultiOutputNode || p instanceof MultiFilterNode
+        || p instanceof OutputNode) {
+      return !p.contains(placeholder);
+    }
+    // filters and projections read their whole input, so they pass the property on to their input
+    boolean childSorted = p instanceof SortNode
+        || (sorted && (p instanceof ProjectNode || p instanceof EqualityFilterNode || p instanceof CombinedColumnNode));
+    return p.children().stream().allMatch(c -> readBySort(c, placeholder, childSorted));
+  }
+
   @Override
   public List<Class<?>> supports() {
     return Arrays.asList(MaterializationNode.class);
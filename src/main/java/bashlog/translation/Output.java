@@ -0,0 +1,36 @@
+package bashlog.translation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import bashlog.CompilerInternals;
+import bashlog.command.Bash;
+import bashlog.plan.OutputNode;
+import common.plan.node.PlanNode;
+
+/** Translates an output node to a sequence of commands, each writing the result of one plan to its file */
+public class Output implements BashTranslator {
+
+  @Override
+  public Bash translate(PlanNode planNode, CompilerInternals bc) {
+    OutputNode o = (OutputNode) planNode;
+    Bash.CommandSequence result = new Bash.CommandSequence();
+    List<PlanNode> plans = o.getPlans();
+    List<String> files = o.getFiles();
+    for (int i = 0; i < plans.size(); i++) {
+      Bash prev = bc.compile(plans.get(i));
+      if (prev instanceof Bash.BashFile) {
+        prev = new Bash.Command("cat").file(prev);
+      }
+      result.other("\n# output " + files.get(i));
+      result.add(prev.wrap("", " > '" + files.get(i).replace("'", "'\\''") + "'"));
+    }
+    return result;
+  }
+
+  @Override
+  public List<Class<?>> supports() {
+    return Arrays.asList(OutputNode.class);
+  }
+
+}
@@ -8,59 +8,75 @@ import bashlog.command.Bash;
 import common.plan.node.PlanNode;
 import common.plan.node.RecursionNode;
 
-/** Translates a recursion node to a bash while loop */
+/**
+ * Translates a recursion node to a bash while loop. The full relation is stored as sorted runs, which are merged like in a
+ * log-structured merge tree (see add_run in BashlogCompiler), so that an iteration does not rewrite the whole full relation. If
+ * temporary files are compressed, the delta file and the runs are compressed.
+ */
 public class Recursion implements BashTranslator {
 
-  private Bash setMinusSorted(Bash prev, String filename) {
+  private Bash setMinusSorted(Bash prev, String runs) {
     Bash.Pipe result = prev.pipe();
     result.cmd("comm")//
         .arg("-23").arg("-")//
-        .file(filename);
+        .file(runs);
     return result;
   }
 
-  private Bash recursionSorted(CompilerInternals bc, RecursionNode rn, String fullFile, String deltaFile, String newDeltaFile) {
+  private Bash recursionSorted(CompilerInternals bc, RecursionNode rn, String runPrefix, String deltaFile, String newDeltaFile) {
     Bash prev = bc.compile(rn.getRecursivePlan());
     //setMinusInMemory(fullFile, sb);
-    Bash delta = setMinusSorted(prev, fullFile);
-    delta = delta.wrap("", " > " + newDeltaFile + ";");
+    Bash delta = setMinusSorted(prev, "<(" + allRuns(bc, runPrefix) + ")");
+    delta = delta.wrap("", write(bc, newDeltaFile) + ";");
 
     Bash.CommandSequence result = new Bash.CommandSequence();
     result.add(delta);
     result.info(rn, "continued");
     result.cmd("mv").file(newDeltaFile).file(deltaFile).arg("; ");
-    result.cmd("$sort")//
-        .arg("-u").arg("--merge").arg("-o")//
-        .file(fullFile).file(fullFile).file(deltaFile).arg("; ");
+    // the new run shares the content of the delta file
+    result.cmd("ln").file(deltaFile).file(newDeltaFile).arg("; ");
+    result.cmd("add_run").file(runPrefix).file(newDeltaFile).arg("; ");
 
     return result;
   }
 
+  /** Command that outputs the merge of the sorted runs of the full relation; they are disjoint */
+  private static String allRuns(CompilerInternals bc, String runPrefix) {
+    return bc.compressTmp() ? "merge_runs " + runPrefix : "$sort -m " + runPrefix + "_*";
+  }
+
+  private static String write(CompilerInternals bc, String file) {
+    return (bc.compressTmp() ? " | compress_tmp" : "") + " > " + file;
+  }
+
   @Override
   public Bash translate(PlanNode planNode, CompilerInternals bc) {
     RecursionNode rn = (RecursionNode) planNode;
     int idx = bc.getNextIndex();
     String deltaFile = "tmp/delta" + idx;
     String newDeltaFile = "tmp/new" + idx;
-    String fullFile = "tmp/full" + idx;
-    bc.registerPlaceholder(rn.getDelta(), deltaFile);
-    bc.registerPlaceholder(rn.getFull(), fullFile);
+    String runPrefix = "tmp/full" + idx;
+    bc.registerPlaceholder(rn.getDelta(), deltaFile, bc.compressTmp());
+    bc.registerPlaceholder(rn.getFull(), "<(" + allRuns(bc, runPrefix) + ")");
 
     Bash.CommandSequence result = new Bash.CommandSequence();
     Bash b = bc.compile(rn.getExitPlan());
-    Bash.Pipe pipe = b.pipe();
-    Bash.Command cmd = pipe.cmd("tee");
-    cmd.file(fullFile);
-    result.add(pipe.wrap("", " > " + deltaFile));
+    result.add(b.pipe().wrap("", write(bc, deltaFile) + "; "));
+    result.cmd("ln").file(deltaFile).file(runPrefix + "_1").arg("\n");
 
     // "do while" loop in bash
     result.cmd("while \n");
 
-    result.add(recursionSorted(bc, rn, fullFile, deltaFile, newDeltaFile));
-    result.cmd("[ -s " + deltaFile + " ]; ");
+    result.add(recursionSorted(bc, rn, runPrefix, deltaFile, newDeltaFile));
+    if (bc.compressTmp()) {
+      // compressed files are not empty
+      result.cmd("[ -n \"$(decompress_tmp " + deltaFile + " | head -c 1)\" ]; ");
+    } else {
+      result.cmd("[ -s " + deltaFile + " ]; ");
+    }
     result.cmd("do continue; done\n");
     result.cmd("rm").file(deltaFile).wrap("", "\n");
-    result.cmd("cat").file(fullFile);
+    result.cmd(allRuns(bc, runPrefix));
     return result;
 
   }
@@ -1,23 +1,43 @@
 package bashlog.translation;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import bashlog.CompilerInternals;
 import bashlog.command.Bash;
+import bashlog.plan.CombinedColumnNode;
 import bashlog.plan.SortNode;
-import common.plan.node.PlanNode;
+import bashlog.plan.TSVFileNode;
+import common.plan.node.*;
 
-/** Translates a sort node to a sort command */
+/** Translates a sort node to a sort command. Sorted base relations can be stored in a cache directory, see BashlogCompiler. */
 public class Sort implements BashTranslator {
 
 	@Override
 	public Bash translate(PlanNode p, CompilerInternals bc) {
 		SortNode s = (SortNode)p;
-		int[] cols = s.sortColumns();
 		Bash prev = bc.compile(s.getTable());
+		Bash cmd = sortCommand(s, prev, bc.sortOptions(s));
+
+		if (bc.sortCache()) {
+			List<String> files = new ArrayList<>();
+			if (baseRelation(s.getTable(), files, bc)) {
+				// the resources of the sort do not change its output
+				return cached(cmd, sortCommand(s, prev, "").generate(), files);
+			}
+		}
+		return cmd;
+	}
+
+	private static Bash sortCommand(SortNode s, Bash prev, String options) {
+		int[] cols = s.sortColumns();
 		Bash.Pipe result = new Bash.Pipe(prev);
 		Bash.Command cmd = result.cmd("$sort").arg("-t $'\\t'");
+		cmd.arg(options);
 
 		boolean supportsUniq = cols == null;
 		if (cols != null) {
@@ -35,10 +55,63 @@ public class Sort implements BashTranslator {
 			cmd.arg("-u");
 		}
 		cmd.file(prev);
-
 		return cmd;
 	}
 
+	/**
+	 * Check whether the plan only reads input files, possibly filtering and projecting them
+	 * @param files accumulator for the input files
+	 */
+	private static boolean baseRelation(PlanNode p, List<String> files, CompilerInternals bc) {
+		if (p instanceof PlaceholderNode) {
+			// a materialized input file is read directly; other materialized files are temporary
+			PlanNode parent = bc.getParent((PlaceholderNode) p);
+			if (parent instanceof MaterializationNode && ((MaterializationNode) parent).getReuseNode() == p) {
+				PlanNode reused = ((MaterializationNode) parent).getReusedPlan();
+				return (reused instanceof TSVFileNode || reused instanceof BashNode) && baseRelation(reused, files, bc);
+			}
+			return false;
+		} else if (p instanceof TSVFileNode) {
+			// temporary files (e.g., dictionary encoded inputs) are written by the script
+			String path = ((TSVFileNode) p).getPath();
+			files.add(path);
+			return !path.startsWith("tmp/");
+		} else if (p instanceof BashNode) {
+			String file = ((BashNode) p).getCatFile();
+			if (file == null) return false;
+			files.add(file);
+			return true;
+		} else if (p instanceof ProjectNode || p instanceof EqualityFilterNode || p instanceof CombinedColumnNode || p instanceof SortNode) {
+			return p.children().stream().allMatch(c -> baseRelation(c, files, bc));
+		}
+		return false;
+	}
+
+	/**
+	 * Read the output of the command from the sort cache, or run it and store its output there
+	 * @param keyText identifies the output of the command
+	 */
+	private static Bash cached(Bash cmd, String keyText, List<String> files) {
+		String key;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			StringBuilder sb = new StringBuilder();
+			for (byte b : digest.digest(keyText.getBytes(StandardCharsets.UTF_8))) {
+				sb.append(String.format("%02x", b));
+			}
+			key = sb.substring(0, 32);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		StringBuilder args = new StringBuilder(key);
+		for (String file : files) {
+			args.append(" ").append(file.matches("[\\w./~+-]+") ? file : "'" + file.replace("'", "'\\''") + "'");
+		}
+		// the exit statuses are read right after the pipeline, a failed command must not leave a truncated cache file
+		return cmd.wrap("{ f=$(cache_file " + args + "); if [ -f \"$f\" ]; then cat \"$f\"; else t=\"$f.$BASHPID.tmp\"; ", //
+				" | cache_store \"$t\"; cache_commit \"$t\" \"$f\" \"${PIPESTATUS[@]}\"; fi; }");
+	}
+
 	@Override
 	public List<Class<?>> supports() {
 		return Arrays.asList(SortNode.class);
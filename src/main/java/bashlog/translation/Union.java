@@ -5,10 +5,12 @@ import java.util.List;
 
 import bashlog.CompilerInternals;
 import bashlog.command.Bash;
+import bashlog.plan.SortOrder;
+import common.Tools;
 import common.plan.node.PlanNode;
 import common.plan.node.UnionNode;
 
-/** Translates a union node to a sort command, which removes duplicates */
+/** Translates a union node to a sort command, which removes duplicates. Merges the inputs if they are already sorted. */
 public class Union implements BashTranslator {
 
   @Override
@@ -17,6 +19,12 @@ public class Union implements BashTranslator {
       return new Bash.Command("echo").arg("-n");
     } else {
       Bash.Command result = new Bash.Command("$sort").arg("-u");
+      SortOrder sorted = new SortOrder(Tools.sequence(planNode.getArity()), false);
+      if (planNode.children().stream().allMatch(c -> bc.sortOrder(c).satisfies(sorted))) {
+        result.arg("-m");
+      } else {
+        result.arg(bc.sortOptions(planNode));
+      }
       for (PlanNode child : ((UnionNode) planNode).getChildren()) {
         result.file(bc.compile(child));
       }
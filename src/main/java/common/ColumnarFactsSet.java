@@ -0,0 +1,70 @@
+package common;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Facts set which stores the values as integers, using a dictionary.
+ * Rows are stored column-wise, and duplicate rows are removed.
+ */
+public class ColumnarFactsSet implements FactsSet {
+
+  private final IntDictionary dictionary;
+
+  private final Map<String, IntTable> tables = new HashMap<>();
+
+  public ColumnarFactsSet() {
+    this(new IntDictionary());
+  }
+
+  /** Create a facts set that shares the dictionary, e.g., to compare ids of different facts sets */
+  public ColumnarFactsSet(IntDictionary dictionary) {
+    this.dictionary = dictionary;
+  }
+
+  public IntDictionary getDictionary() {
+    return dictionary;
+  }
+
+  public void add(String relation, Comparable<?>... args) {
+    add(relation, dictionary.encode(args));
+  }
+
+  /** Add a row which is already encoded with the dictionary of this facts set */
+  public void add(String relation, int[] row) {
+    tables.computeIfAbsent(relation, k -> new IntTable(row.length)).add(row);
+  }
+
+  /** Get the table of a relation, or null if there is no such relation */
+  public IntTable getTable(String relation) {
+    return tables.get(relation);
+  }
+
+  /** Set the rows of a relation; the table needs to be encoded with the dictionary of this facts set */
+  public void putTable(String relation, IntTable table) {
+    tables.put(relation, table);
+  }
+
+  @Override
+  public Set<String> getRelations() {
+    return tables.keySet();
+  }
+
+  @Override
+  public Stream<Comparable<?>[]> getByRelation(String relation) {
+    IntTable table = tables.get(relation);
+    if (table == null) {
+      return Stream.empty();
+    }
+    return IntStream.range(0, table.size()).mapToObj(i -> dictionary.decode(table.getRow(i)));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    tables.keySet().forEach(relation -> getByRelation(relation)
+        .forEach(row -> sb.append(relation).append(Arrays.toString(row)).append("\n")));
+    return sb.toString();
+  }
+}
@@ -0,0 +1,59 @@
+package common;
+
+import java.util.*;
+
+/**
+ * Assigns a dense integer id to every value. Values are compared by their string representation, as in the bash backend.
+ * Not thread-safe.
+ */
+public class IntDictionary {
+
+  private final Map<String, Integer> valueToId = new HashMap<>();
+
+  private final List<String> idToValue = new ArrayList<>();
+
+  /** Get id of value, assign a new one if necessary */
+  public int encode(Object value) {
+    String str = Objects.toString(value);
+    Integer id = valueToId.get(str);
+    if (id == null) {
+      id = idToValue.size();
+      valueToId.put(str, id);
+      idToValue.add(str);
+    }
+    return id;
+  }
+
+  /** Get id of value, or -1 if the value has no id yet */
+  public int lookup(Object value) {
+    Integer id = valueToId.get(Objects.toString(value));
+    return id == null ? -1 : id;
+  }
+
+  public String decode(int id) {
+    return idToValue.get(id);
+  }
+
+  /** Encode all values of a row */
+  public int[] encode(Object[] row) {
+    int[] result = new int[row.length];
+    for (int i = 0; i < row.length; i++) {
+      result[i] = encode(row[i]);
+    }
+    return result;
+  }
+
+  /** Decode all values of a row */
+  public Comparable<?>[] decode(int[] row) {
+    Comparable<?>[] result = new Comparable<?>[row.length];
+    for (int i = 0; i < row.length; i++) {
+      result[i] = idToValue.get(row[i]);
+    }
+    return result;
+  }
+
+  /** Number of values in the dictionary */
+  public int size() {
+    return idToValue.size();
+  }
+}
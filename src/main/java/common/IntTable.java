@@ -0,0 +1,193 @@
+package common;
+
+import java.util.Arrays;
+
+/**
+ * Set of integer rows with a fixed arity. Values are stored column-wise in blocks of primitive arrays,
+ * duplicates are detected with an open addressing hash table that refers to the row indices.
+ */
+public class IntTable {
+
+  private static final int BLOCK_BITS = 12;
+
+  private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+
+  private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+
+  private static final int HASH_SEED = 0x2545F491;
+
+  private final int arity;
+
+  /** column -> block -> value */
+  private int[][][] columns;
+
+  private int size = 0;
+
+  /** Hash table with linear probing; contains row index + 1, or 0 for free slots */
+  private int[] slots = new int[16];
+
+  public IntTable(int arity) {
+    this.arity = arity;
+    this.columns = new int[arity][0][];
+  }
+
+  public int arity() {
+    return arity;
+  }
+
+  /** Number of rows */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Value of a column of a row */
+  public int get(int row, int column) {
+    return columns[column][row >>> BLOCK_BITS][row & BLOCK_MASK];
+  }
+
+  public int[] getRow(int row) {
+    int[] result = new int[arity];
+    getRow(row, result);
+    return result;
+  }
+
+  /** Copy the values of a row to dst */
+  public void getRow(int row, int[] dst) {
+    int block = row >>> BLOCK_BITS, offset = row & BLOCK_MASK;
+    for (int c = 0; c < arity; c++) {
+      dst[c] = columns[c][block][offset];
+    }
+  }
+
+  /**
+   * Add a row, unless it is already in the table. The array is not stored.
+   * @return true if the row was added
+   */
+  public boolean add(int[] row) {
+    if (row.length != arity) {
+      throw new IllegalArgumentException("expected row of arity " + arity + " but got " + Arrays.toString(row));
+    }
+    if ((size + 1) * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+    int slot = find(row);
+    if (slots[slot] != 0) {
+      return false;
+    }
+    append(row);
+    slots[slot] = size;
+    return true;
+  }
+
+  /** Add all rows of another table */
+  public void addAll(IntTable other) {
+    int[] row = new int[arity];
+    for (int i = 0; i < other.size; i++) {
+      other.getRow(i, row);
+      add(row);
+    }
+  }
+
+  /** Copy of this table, which can be changed independently of it */
+  public IntTable copy() {
+    IntTable result = new IntTable(arity);
+    for (int c = 0; c < arity; c++) {
+      result.columns[c] = new int[columns[c].length][];
+      for (int b = 0; b < columns[c].length; b++) {
+        if (columns[c][b] != null) result.columns[c][b] = columns[c][b].clone();
+      }
+    }
+    result.slots = slots.clone();
+    result.size = size;
+    return result;
+  }
+
+  public boolean contains(int[] row) {
+    return slots[find(row)] != 0;
+  }
+
+  /** Slot of row, or free slot where it should be inserted */
+  private int find(int[] row) {
+    int mask = slots.length - 1;
+    int slot = hash(row) & mask;
+    while (slots[slot] != 0 && !rowEquals(slots[slot] - 1, row)) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean rowEquals(int row, int[] values) {
+    int block = row >>> BLOCK_BITS, offset = row & BLOCK_MASK;
+    for (int c = 0; c < arity; c++) {
+      if (columns[c][block][offset] != values[c]) return false;
+    }
+    return true;
+  }
+
+  private void append(int[] row) {
+    int block = size >>> BLOCK_BITS, offset = size & BLOCK_MASK;
+    for (int c = 0; c < arity; c++) {
+      int[][] column = columns[c];
+      if (block == column.length) {
+        column = columns[c] = Arrays.copyOf(column, Math.max(4, column.length * 2));
+      }
+      if (column[block] == null) {
+        column[block] = new int[BLOCK_SIZE];
+      }
+      column[block][offset] = row[c];
+    }
+    size++;
+  }
+
+  private void rehash(int capacity) {
+    int[] newSlots = new int[capacity];
+    int mask = capacity - 1;
+    int[] row = new int[arity];
+    for (int i = 0; i < size; i++) {
+      getRow(i, row);
+      int slot = hash(row) & mask;
+      while (newSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newSlots[slot] = i + 1;
+    }
+    slots = newSlots;
+  }
+
+  /** Hash of the values of a row */
+  public static int hash(int[] row) {
+    int h = HASH_SEED;
+    for (int value : row) {
+      h = mix(h ^ value);
+    }
+    return h;
+  }
+
+  /** Hash of some columns of a row, same as {@link #hash(int[])} of the projected row */
+  public static int hash(IntTable table, int row, int[] columns) {
+    int h = HASH_SEED;
+    for (int c : columns) {
+      h = mix(h ^ table.get(row, c));
+    }
+    return h;
+  }
+
+  /** Spread the bits of a hash value */
+  public static int mix(int h) {
+    h *= 0x9E3779B1;
+    return h ^ (h >>> 15);
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < size; i++) {
+      sb.append(Arrays.toString(getRow(i))).append("\n");
+    }
+    return sb.toString();
+  }
+}
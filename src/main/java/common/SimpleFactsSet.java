@@ -2,6 +2,10 @@ package common;
 
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -26,12 +30,16 @@ public class SimpleFactsSet implements FactsSet {
   }
 
   public void loadFile(Path path) throws IOException {
-    ParserReader pr = new ParserReader(Tools.getFileContent(path.toFile()));
-    while (true) {
-      pr.skipComments();
-      if (pr.peek() == null) return;
-      CompoundTerm value = CompoundTerm.read(pr, Collections.emptyMap(), Parseable.ALL_FEATURES);
-      if (value != null && pr.consume(".") != null) {
+    try (Reader reader = new InputStreamReader(Files.newInputStream(path), StandardCharsets.UTF_8)) {
+      ParserReader pr = new ParserReader(reader);
+      while (true) {
+        pr.skipComments();
+        if (pr.atEnd()) return;
+        CompoundTerm value = CompoundTerm.read(pr, Collections.emptyMap(), Parseable.ALL_FEATURES);
+        if (value == null) {
+          pr.error("expected a fact", null);
+        }
+        pr.expect(".");
         add(value);
       }
     }
@@ -0,0 +1,47 @@
+package common;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Facts set whose rows are produced lazily, e.g., by a running process.
+ * Every call of {@link #getByRelation(String)} opens a new stream. Streams should be closed after use;
+ * closing the facts set closes all streams that are still open.
+ */
+public class StreamingFactsSet implements FactsSet, Closeable {
+
+  private final Map<String, Supplier<Stream<Comparable<?>[]>>> relationToRows = new LinkedHashMap<>();
+
+  private final List<Stream<Comparable<?>[]>> openStreams = new ArrayList<>();
+
+  /** Register a relation; the supplier is called whenever the rows of the relation are requested */
+  public void put(String relation, Supplier<Stream<Comparable<?>[]>> rows) {
+    relationToRows.put(relation, rows);
+  }
+
+  @Override
+  public Set<String> getRelations() {
+    return relationToRows.keySet();
+  }
+
+  @Override
+  public Stream<Comparable<?>[]> getByRelation(String relation) {
+    Supplier<Stream<Comparable<?>[]>> rows = relationToRows.get(relation);
+    if (rows == null) {
+      return Stream.empty();
+    }
+    Stream<Comparable<?>[]> stream = rows.get();
+    openStreams.add(stream);
+    return stream.onClose(() -> openStreams.remove(stream));
+  }
+
+  @Override
+  public void close() {
+    for (Stream<Comparable<?>[]> stream : new ArrayList<>(openStreams)) {
+      stream.close();
+    }
+    openStreams.clear();
+  }
+}
@@ -0,0 +1,100 @@
+package common;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+
+/**
+ * Writes rows as TSV (UTF-8) to a channel, through a buffer that is reused for all rows. Computes the SHA-256 hash of the content,
+ * so that callers can skip files whose content did not change. Without a channel, the rows are only hashed.
+ */
+public class TSVChannelWriter implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final WritableByteChannel channel;
+
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+  private final MessageDigest digest;
+
+  private long size = 0;
+
+  private String hash;
+
+  /** @param channel where to write the rows, or null to only compute the hash */
+  public TSVChannelWriter(WritableByteChannel channel) {
+    this.channel = channel;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public void write(Comparable<?>[] row) throws IOException {
+    for (int i = 0; i < row.length; i++) {
+      if (i > 0) put((byte) '\t');
+      put(Objects.toString(row[i]));
+    }
+    put((byte) '\n');
+  }
+
+  private void put(String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 0x80) {
+        // encode the rest of the value at once, it might contain surrogate pairs
+        for (byte b : value.substring(i).getBytes(StandardCharsets.UTF_8)) {
+          put(b);
+        }
+        return;
+      }
+      put((byte) c);
+    }
+  }
+
+  private void put(byte b) throws IOException {
+    if (!buffer.hasRemaining()) flush();
+    buffer.put(b);
+  }
+
+  private void flush() throws IOException {
+    buffer.flip();
+    size += buffer.remaining();
+    digest.update(buffer.duplicate());
+    if (channel != null) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    buffer.clear();
+  }
+
+  /** Write the remaining bytes and compute the hash; does not close the channel */
+  @Override
+  public void close() throws IOException {
+    if (hash != null) return;
+    flush();
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(String.format("%02x", b));
+    }
+    hash = sb.toString();
+  }
+
+  /** Hash of the content, available after closing */
+  public String getHash() {
+    return hash;
+  }
+
+  /** Number of bytes of the content, available after closing */
+  public long getSize() {
+    return size;
+  }
+}
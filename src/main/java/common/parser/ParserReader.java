@@ -1,5 +1,9 @@
 package common.parser;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.function.BiFunction;
 
@@ -8,30 +12,115 @@ import org.slf4j.LoggerFactory;
 
 import common.CallStack;
 
-/** Helper class for parsing. It provides convenience methods for reading characters from a string, for example names, literals (numbers, strings), and character sequences */
+/**
+ * Helper class for parsing. It provides convenience methods for reading characters from a string or a reader, for example names,
+ * literals (numbers, strings), and character sequences. Input from a reader is kept in a window, which only holds the current
+ * line and the characters read ahead, so that large files can be parsed without loading them completely.
+ */
 public class ParserReader {
 
   private static final Logger LOG = LoggerFactory.getLogger(ParserReader.class);
 
-  /** The complete string we parse */
-  private String input;
+  private static final int WINDOW_SIZE = 1 << 16;
 
-  /** Index of the character that we read next */
-  private int pos;
+  /** Source of the characters after the window; null if there are none */
+  private Reader reader;
+
+  /** Window of the input */
+  private char[] buf;
+
+  /** Number of characters in the window */
+  private int limit;
+
+  /** Index (in the window) of the character that we read next */
+  private int index;
+
+  /** Position of the first character of the window in the input */
+  private long offset;
+
+  /** Number of line breaks before the window */
+  private int line;
 
   /** Parse string "input" */
   public ParserReader(String input) {
-    this.input = input;
+    this(input, 0);
   }
 
   /** Parse string "input", starting at index 'pos' */
   public ParserReader(String input, int pos) {
-    this.input = input;
-    this.pos = pos;
+    this.buf = input.toCharArray();
+    this.limit = buf.length;
+    this.index = pos;
+  }
+
+  /** Parse the characters of a reader; the caller closes it */
+  public ParserReader(Reader reader) {
+    this.reader = reader;
+    this.buf = new char[WINDOW_SIZE];
   }
 
   public int pos() {
-    return pos;
+    return (int) (offset + index);
+  }
+
+  /** Whether all characters have been read */
+  public boolean atEnd() {
+    return !available(1);
+  }
+
+  /** Make sure that the window contains the next n characters; returns false if the input ends before */
+  private boolean available(int n) {
+    while (index + n > limit) {
+      if (reader == null) return false;
+      if (limit == buf.length) compact();
+      try {
+        int read = reader.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+          reader = null;
+        } else {
+          limit += read;
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return true;
+  }
+
+  /** Drop the lines before the current one from the window, and grow the window if it is still more than half full */
+  private void compact() {
+    int keep = index;
+    while (keep > 0 && buf[keep - 1] != '\n') {
+      keep--;
+    }
+    for (int i = 0; i < keep; i++) {
+      if (buf[i] == '\n') line++;
+    }
+    System.arraycopy(buf, keep, buf, 0, limit - keep);
+    limit -= keep;
+    index -= keep;
+    offset += keep;
+    if (limit > buf.length / 2) {
+      buf = Arrays.copyOf(buf, buf.length * 2);
+    }
+  }
+
+  /** Index (in the window) of the next line break, or the end of the input */
+  private int lineEnd() {
+    int n = 0;
+    while (available(n + 1) && buf[index + n] != '\n') {
+      n++;
+    }
+    return index + n;
+  }
+
+  /** Whether the next characters are s */
+  private boolean lookingAt(String s) {
+    if (!available(s.length())) return false;
+    for (int i = 0; i < s.length(); i++) {
+      if (buf[index + i] != s.charAt(i)) return false;
+    }
+    return true;
   }
 
   /**
@@ -43,9 +132,8 @@ public class ParserReader {
     skipComments();
     debug();
     for (String consume : toConsume) {
-      String toCheck = input.substring(pos, Math.min(input.length(), pos + consume.length()));
-      if (consume.equals(toCheck)) {
-        pos += consume.length();
+      if (lookingAt(consume)) {
+        index += consume.length();
         return consume;
       }
     }
@@ -64,40 +152,39 @@ public class ParserReader {
     return null;
   }
 
-  /** Prints method and current position */
+  /** Prints method and current position within the window */
   public void debug() {
     if (LOG.isDebugEnabled()) {
       String method = CallStack.toString(new CallStack().ret().top());
-      LOG.debug(method + ": " + input.substring(0, pos) + "__>" + input.substring(pos));
+      LOG.debug(method + ": " + new String(buf, 0, index) + "__>" + new String(buf, index, limit - index));
     }
   }
 
   /** Advance position to the next non-whitespace character */
   public void skipWhitespace() {
     debug();
-    while (pos < input.length() && Character.isWhitespace(input.charAt(pos))) {
-      pos++;
+    while (available(1) && Character.isWhitespace(buf[index])) {
+      index++;
     }
   }
 
   /** Look at next character, without changing position */
   public Character peek() {
-    if (pos >= input.length()) return '\0';
-    return input.charAt(pos);
+    if (!available(1)) return '\0';
+    return buf[index];
   }
 
   /** Look at rest of line, without changing position */
   String peekLine() {
-    if (pos >= input.length()) return null;
-    int idx = input.indexOf("\n", pos);
-    if (idx < 0) idx = input.length();
-    return input.substring(pos, idx);
+    if (!available(1)) return null;
+    int end = lineEnd();
+    return new String(buf, index, end - index);
   }
 
   /** Read one character, and update position */
   public Character read() {
-    if (pos >= input.length()) return null;
-    return input.charAt(pos++);
+    if (!available(1)) return null;
+    return buf[index++];
   }
 
   /** Read until next linebreak, and update position */
@@ -129,6 +216,16 @@ public class ParserReader {
     if (s != '"' && s != '\'') {
       throw new ParseException("string should start with single quote ' or double quote \"");
     }
+    // fast path for strings without escapes
+    int n = 0;
+    while (available(n + 1) && buf[index + n] != s && buf[index + n] != '\\') {
+      n++;
+    }
+    if (available(n + 1) && buf[index + n] == s && !(available(n + 2) && buf[index + n + 1] == s)) {
+      String result = new String(buf, index, n);
+      index += n + 1;
+      return result;
+    }
     boolean escaped = false;
     StringBuilder sb = new StringBuilder();
     Character c;
@@ -157,28 +254,28 @@ public class ParserReader {
     debug();
     skipComments();
 
-    StringBuilder sb = new StringBuilder();
-    Character c;
-    while ((c = peek()) != '\0') {
-      if (Character.isAlphabetic(c) || c == '_' || (sb.length() > 0 && Character.isDigit(c))) {
-        sb.append(read());
+    int n = 0;
+    while (available(n + 1)) {
+      char c = buf[index + n];
+      if (Character.isAlphabetic(c) || c == '_' || (n > 0 && Character.isDigit(c))) {
+        n++;
       } else {
         break;
       }
     }
+    String name = n == 0 ? null : new String(buf, index, n);
+    index += n;
     debug();
-    if (sb.length() == 0) return null;
-    return sb;
+    return name;
   }
 
   /** While next character is a '%', advance to first non-space character in next line. */
   public void skipComments() {
-    do {
-      while (peek() != null && peek() == '%') {
-        readWhile((c, sb) -> c != '\n');
-      }
+    skipWhitespace();
+    while (peek() == '%') {
+      index = lineEnd();
       skipWhitespace();
-    } while (peek() != null && peek() == '%');
+    }
   }
 
   /** Read an integer number. */
@@ -223,19 +320,18 @@ public class ParserReader {
 
   public void error(String msg, String post) {
     // mark the position with "__>"
-    int act = 0, line = 1;
-    while (true) {
-      int next = input.indexOf('\n', act);
-      if (next < 0 || next > pos) break;
-      line++;
-      act = next + 1;
-    }
-    int until = input.indexOf('\n', pos);
-    if (until < 0) until = input.length();
-
-    StringBuilder context = new StringBuilder().append(input.substring(act, until)).append("\n");
-    context.append(String.join("", Collections.nCopies((pos - act), " "))).append("*\n");
-    context.append(String.join("", Collections.nCopies((pos - act), " "))).append("L---- here\n");
+    int until = lineEnd();
+    int act = index, line = this.line + 1;
+    while (act > 0 && buf[act - 1] != '\n') {
+      act--;
+    }
+    for (int i = 0; i < act; i++) {
+      if (buf[i] == '\n') line++;
+    }
+
+    StringBuilder context = new StringBuilder().append(buf, act, until - act).append("\n");
+    context.append(String.join("", Collections.nCopies((index - act), " "))).append("*\n");
+    context.append(String.join("", Collections.nCopies((index - act), " "))).append("L---- here\n");
 
     String error = "error: " + msg + ", at line " + line + ":\n\n";
     error += context;
@@ -1,13 +1,15 @@
 package common.parser;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import common.Tools;
-
 /**
  * Parses datalog
  * 
@@ -41,8 +43,9 @@ public class Program implements Parseable {
 
   public static Program loadFile(String path, Set<String> supportedFeatures) throws IOException {
     File f = new File(path).getAbsoluteFile();
-    String content = Tools.getFileContent(f);
-    return read(new ParserReader(content), supportedFeatures);
+    try (Reader reader = new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8)) {
+      return read(new ParserReader(reader), supportedFeatures);
+    }
   }
 
   public static Program read(ParserReader pr) {
@@ -17,6 +17,8 @@ public class AntiJoinNode implements PlanNode {
 
   private final int[] leftProjection;
 
+  private int hash;
+
   AntiJoinNode(PlanNode left, PlanNode right, int[] leftProjection) {
     if (leftProjection.length != right.getArity()) {
       throw new IllegalArgumentException("The left projection and the right plan for anti join should have the same size");
@@ -80,11 +82,14 @@ public class AntiJoinNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return left.hashCode() ^ right.hashCode() ^ Arrays.hashCode(leftProjection);
+    if (hash == 0) {
+      hash = left.hashCode() ^ right.hashCode() ^ Arrays.hashCode(leftProjection);
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newLeft = left.transform(fn, originalPath);
@@ -4,6 +4,7 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 import common.Tools;
+import common.parser.ParserReader;
 
 public class BashNode implements PlanNode {
 
@@ -15,6 +16,8 @@ public class BashNode implements PlanNode {
 
   private final List<PlanNode> children;
 
+  private int hash;
+
   public BashNode(String command, List<String> commandParts, Collection<PlanNode> children, int arity) {
     this.command = command;
     this.commandParts = commandParts;
@@ -35,6 +38,29 @@ public class BashNode implements PlanNode {
     return commandParts;
   }
 
+  /** Name of the file if the command only reads one file (cat file), otherwise null */
+  public String getCatFile() {
+    return getCatFile(command);
+  }
+
+  /** Name of the file if the command only reads one file (cat file), otherwise null */
+  public static String getCatFile(String command) {
+    if (!command.trim().startsWith("cat ")) {
+      return null;
+    }
+    ParserReader pr = new ParserReader(command.trim());
+    pr.expect("cat ");
+    pr.skipWhitespace();
+    String file;
+    if (pr.peek() == '\"' || pr.peek() == '\'') file = pr.readString();
+    else file = pr.readWhile((c, s) -> !Character.isWhitespace(c));
+    pr.skipWhitespace();
+    if (pr.peek() != '\0' || file.startsWith("!")) {
+      return null;
+    }
+    return file;
+  }
+
   @Override
   public String operatorString() {
     return "bash: " + commandParts;
@@ -74,11 +100,14 @@ public class BashNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return arity + Objects.hash(commandParts, children);
+    if (hash == 0) {
+      hash = arity + Objects.hash(commandParts, children);
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       List<PlanNode> newChildren = this.children.stream().map(pn -> pn.transform(fn, originalPath)).collect(Collectors.toList());
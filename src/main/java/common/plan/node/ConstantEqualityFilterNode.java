@@ -12,6 +12,8 @@ public class ConstantEqualityFilterNode implements EqualityFilterNode {
 
   private final Comparable<?> value;
 
+  private int hash;
+
   ConstantEqualityFilterNode(PlanNode table, int field, Comparable<?> value) {
     if (field >= table.getArity()) {
       throw new IllegalArgumentException("The table has arity " + table.getArity() + " and the field has id " + field);
@@ -70,11 +72,14 @@ public class ConstantEqualityFilterNode implements EqualityFilterNode {
 
   @Override
   public int hashCode() {
-    return "selection".hashCode() ^ table.hashCode() ^ value.hashCode();
+    if (hash == 0) {
+      hash = "selection".hashCode() ^ table.hashCode() ^ value.hashCode();
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newTable = table.transform(fn, originalPath);
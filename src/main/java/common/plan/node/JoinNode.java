@@ -19,6 +19,10 @@ public class JoinNode implements PlanNode {
 
   private final int[] rightProjection;
 
+  private final int arity;
+
+  private int hash;
+
   public JoinNode(PlanNode left, PlanNode right, int[] leftProjection, int[] rightProjection) {
     if (leftProjection.length != rightProjection.length) {
       throw new IllegalArgumentException("The left and right projections for join should have the same size");
@@ -38,6 +42,7 @@ public class JoinNode implements PlanNode {
     this.right = right;
     this.leftProjection = leftProjection;
     this.rightProjection = rightProjection;
+    this.arity = left.getArity() + right.getArity();
   }
 
   public PlanNode getLeft() {
@@ -58,7 +63,7 @@ public class JoinNode implements PlanNode {
 
   @Override
   public int getArity() {
-    return left.getArity() + right.getArity();
+    return arity;
   }
 
   @Override
@@ -96,11 +101,14 @@ public class JoinNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return left.hashCode() ^ right.hashCode() ^ Arrays.hashCode(leftProjection) ^ Arrays.hashCode(rightProjection);
+    if (hash == 0) {
+      hash = left.hashCode() ^ right.hashCode() ^ Arrays.hashCode(leftProjection) ^ Arrays.hashCode(rightProjection);
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newLeft = left.transform(fn, originalPath);
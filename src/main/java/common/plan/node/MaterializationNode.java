@@ -20,6 +20,8 @@ public class MaterializationNode implements PlanNode {
   /** see {@link #getReuseCount()} */
   private final int reuseCount;
 
+  private int hash;
+
   public static class Builder {
 
     PlaceholderNode placeholder;
@@ -96,7 +98,7 @@ public class MaterializationNode implements PlanNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newMainPlan = mainPlan.transform(fn, originalPath);
@@ -127,7 +129,10 @@ public class MaterializationNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return Objects.hash(mainPlan, reusedPlan);
+    if (hash == 0) {
+      hash = Objects.hash(mainPlan, reusedPlan);
+    }
+    return hash;
   }
 
   @Override
@@ -18,6 +18,8 @@ public class MultiFilterNode implements PlanNode {
 
   private final PlaceholderNode placeholder;
 
+  private int hash;
+
   public MultiFilterNode(Set<PlanNode> children, PlanNode table, int arity) {
     this.arity = arity;
     this.table = table;
@@ -91,10 +93,13 @@ public class MultiFilterNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return children.hashCode();
+    if (hash == 0) {
+      hash = children.hashCode();
+    }
+    return hash;
   }
 
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newTable = table.transform(fn, originalPath);
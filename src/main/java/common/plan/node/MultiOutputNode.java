@@ -17,6 +17,8 @@ public class MultiOutputNode implements PlanNode {
 
   private final List<PlaceholderNode> reuseNodes;
 
+  private int hash;
+
   public static class Builder {
 
     List<PlaceholderNode> reuseNodes = new ArrayList<>();
@@ -63,6 +65,11 @@ public class MultiOutputNode implements PlanNode {
     return mainPlan;
   }
 
+  /** Copy of this node with other reused plans (e.g., with different constants), for the same reuse nodes */
+  public MultiOutputNode withReusedPlans(List<PlanNode> reusedPlans) {
+    return new MultiOutputNode(mainPlan, leafPlan, reusedPlans, reuseNodes);
+  }
+
   @Override
   public int getArity() {
     return mainPlan == null ? 0 : mainPlan.getArity();
@@ -89,7 +96,7 @@ public class MultiOutputNode implements PlanNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newMainPlan = mainPlan.transform(fn, originalPath);
@@ -141,7 +148,10 @@ public class MultiOutputNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return Objects.hash(mainPlan, leafPlan);
+    if (hash == 0) {
+      hash = Objects.hash(mainPlan, leafPlan);
+    }
+    return hash;
   }
 
   public List<PlanNode> reusedPlans() {
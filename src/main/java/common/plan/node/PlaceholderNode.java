@@ -54,11 +54,10 @@ public class PlaceholderNode implements PlanNode {
   public static Map<PlaceholderNode, PlanNode> placeholderToParentMap(PlanNode plan) {
     Map<PlaceholderNode, PlanNode> map = new HashMap<>();
     if (plan != null) {
-      plan.transform(n -> {
+      plan.visit(n -> {
         for (PlaceholderNode pn : n.placeholders()) {
           map.put(pn, n);
         }
-        return n;
       });
     }
     return map;
@@ -69,13 +68,12 @@ public class PlaceholderNode implements PlanNode {
   public static Set<PlanNode> outerParents(PlanNode ofPlan, Map<PlaceholderNode, PlanNode> placeholderToParent) {
     HashMap<PlanNode, Boolean> nodeToContained = new HashMap<>();
   
-    ofPlan.transform(pn -> {
+    ofPlan.visit(pn -> {
       nodeToContained.put(pn, true);
   
       if (pn instanceof PlaceholderNode) {
         nodeToContained.putIfAbsent(placeholderToParent.get(pn), false);
       }
-      return pn;
     });
   
     return nodeToContained.entrySet().stream().filter(e -> !e.getValue()).map(e -> e.getKey()).collect(Collectors.toSet());
@@ -84,11 +82,10 @@ public class PlaceholderNode implements PlanNode {
   /** Get all placeholders that occur in a plan */
   public static Set<PlaceholderNode> searchInPlan(PlanNode plan) {
     Set<PlaceholderNode> placeholders = new HashSet<>();
-    plan.transform(x -> {
+    plan.visit(x -> {
       if (x instanceof PlaceholderNode) {
         placeholders.add((PlaceholderNode) x);
       }
-      return x;
     });
     return placeholders;
   }
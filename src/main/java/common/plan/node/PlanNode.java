@@ -2,6 +2,7 @@ package common.plan.node;
 
 import java.util.*;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -16,6 +17,8 @@ import common.Tools;
  * Some utility methods are provided to build more easily plans.
  * <p>
  * LogicalPlanBuilder builds a plan from a Program
+ * <p>
+ * Plan nodes are immutable. Nodes with children cache their hash code, as it depends on the whole subplan.
  */
 public interface PlanNode {
 
@@ -198,8 +201,28 @@ public interface PlanNode {
    * First transforms children, then applies fn to this node which children have been replaced
    * If you don't want to apply any specific operation just return the parameter <br>
    * Parameters of fn: see {@link TransformFn#apply(PlanNode, PlanNode, List)}
+   * <p>
+   * A subplan that occurs several times in the plan (e.g., reused by LogicalPlanBuilder) is transformed at each occurrence. Use
+   * {@link #transform(TransformFn)} if fn does not depend on the occurrence.
    */
   default PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+    if (fn instanceof MemoizedTransformFn) {
+      Map<PlanNode, PlanNode> done = ((MemoizedTransformFn) fn).done;
+      PlanNode result = done.get(this);
+      if (result == null) {
+        result = transformNode(fn, originalPath);
+        done.put(this, result);
+      }
+      return result;
+    }
+    return transformNode(fn, originalPath);
+  }
+
+  /**
+   * Transform the children of this node with child.transform(fn, originalPath), and apply fn to this node, see
+   * {@link #transform(TransformFn, List)}. Implement this method instead of transform(...) for nodes with children.
+   */
+  default PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode result = fn.apply(this, this, originalPath);
@@ -221,17 +244,35 @@ public interface PlanNode {
   }
 
   /**
-   * Convenience method. Calls {@link #transform(TransformFn, List)}
+   * Calls {@link #transform(TransformFn, List)} without path. A subplan that occurs several times in the plan is transformed only
+   * once, so fn must only depend on the node, not on the place where it occurs.
    */
   default PlanNode transform(TransformFn fn) {
-    return transform(fn, null);
+    return transform(new MemoizedTransformFn(fn), null);
   }
 
   /**
-   * Convenience method. Calls {@link #transform(TransformFn, List)}
+   * Convenience method. Calls {@link #transform(TransformFn)}
    */
   default PlanNode transform(Function<PlanNode, PlanNode> fn) {
-    return transform((o, n, p) -> fn.apply(n), null);
+    return transform((o, n, p) -> fn.apply(n));
+  }
+
+  /**
+   * Call visitor for every node of the plan, children before their parents (see {@link #children()}). A subplan that occurs several
+   * times in the plan is visited only once.
+   */
+  default void visit(Consumer<PlanNode> visitor) {
+    visit(visitor, Collections.newSetFromMap(new IdentityHashMap<>()));
+  }
+
+  /** Internal method for {@link #visit(Consumer)} */
+  default void visit(Consumer<PlanNode> visitor, Set<PlanNode> visited) {
+    if (!visited.add(this)) return;
+    for (PlanNode child : children()) {
+      child.visit(visitor, visited);
+    }
+    visitor.accept(this);
   }
 
   /**
@@ -239,11 +280,10 @@ public interface PlanNode {
    */
   default boolean contains(PlanNode target) {
     boolean[] found = new boolean[] { false };
-    transform((node) -> {
+    visit((node) -> {
       if (node.equals(target)) {
         found[0] = true;
       }
-      return node;
     });
     return found[0];
   }
@@ -337,6 +377,23 @@ public interface PlanNode {
   }
 }
 
+/** Remembers the result for every node that was transformed, see {@link PlanNode#transform(PlanNode.TransformFn)} */
+final class MemoizedTransformFn implements PlanNode.TransformFn {
+
+  final Map<PlanNode, PlanNode> done = new IdentityHashMap<>();
+
+  private final PlanNode.TransformFn fn;
+
+  MemoizedTransformFn(PlanNode.TransformFn fn) {
+    this.fn = fn;
+  }
+
+  @Override
+  public PlanNode apply(PlanNode originalNode, PlanNode transformed, List<PlanNode> originalPath) {
+    return fn.apply(originalNode, transformed, originalPath);
+  }
+}
+
 final class LogHolder {
 
   static final Logger LOG = LoggerFactory.getLogger(PlanNode.class);
@@ -16,6 +16,8 @@ public class ProjectNode implements PlanNode {
 
   private final Comparable<?>[] constants;
 
+  private int hash;
+
   /**
    * @param projection position in the new tuple => position in the old tuple. If <0 the value is null (i.e. empty fields)
    * @param constants  position in the new tuple => constant to set
@@ -103,11 +105,14 @@ public class ProjectNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return "projection".hashCode() ^ table.hashCode() ^ Arrays.hashCode(projection) ^ Arrays.hashCode(constants);
+    if (hash == 0) {
+      hash = "projection".hashCode() ^ table.hashCode() ^ Arrays.hashCode(projection) ^ Arrays.hashCode(constants);
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newTable = table.transform(fn, originalPath);
@@ -24,6 +24,8 @@ public class RecursionNode implements PlanNode {
 
   protected final PlaceholderNode fullNode;
 
+  private int hash;
+
   public static class Builder {
 
     int arity;
@@ -129,7 +131,10 @@ public class RecursionNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return exitPlan.hashCode() ^ 137 * recursivePlan.hashCode();
+    if (hash == 0) {
+      hash = exitPlan.hashCode() ^ 137 * recursivePlan.hashCode();
+    }
+    return hash;
   }
 
   @Override
@@ -153,7 +158,7 @@ public class RecursionNode implements PlanNode {
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode.assertSameArity(exitPlan, recursivePlan);
@@ -12,6 +12,8 @@ public class UnionNode implements PlanNode {
 
   protected final int arity;
 
+  private int hash;
+
   private UnionNode(Set<PlanNode> children, int arity) {
     this.children = children;
     this.arity = arity;
@@ -85,10 +87,13 @@ public class UnionNode implements PlanNode {
 
   @Override
   public int hashCode() {
-    return children.hashCode();
+    if (hash == 0) {
+      hash = children.hashCode();
+    }
+    return hash;
   }
 
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       Set<PlanNode> newChildren = children.stream()//
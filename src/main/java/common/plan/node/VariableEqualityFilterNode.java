@@ -12,6 +12,8 @@ public class VariableEqualityFilterNode implements EqualityFilterNode {
 
   private final int field2;
 
+  private int hash;
+
   VariableEqualityFilterNode(PlanNode table, int field1, int field2) {
     if (field1 >= table.getArity() || field2 >= table.getArity()) {
       throw new IllegalArgumentException("The table has arity " + table.getArity() + " and the fields have ids " + field1 + " and " + field2);
@@ -70,11 +72,14 @@ public class VariableEqualityFilterNode implements EqualityFilterNode {
 
   @Override
   public int hashCode() {
-    return "selection".hashCode() ^ table.hashCode() ^ (field1 + field2);
+    if (hash == 0) {
+      hash = "selection".hashCode() ^ table.hashCode() ^ (field1 + field2);
+    }
+    return hash;
   }
 
   @Override
-  public PlanNode transform(TransformFn fn, List<PlanNode> originalPath) {
+  public PlanNode transformNode(TransformFn fn, List<PlanNode> originalPath) {
     try {
       Tools.addLast(originalPath, this);
       PlanNode newTable = table.transform(fn, originalPath);
@@ -77,7 +77,7 @@ public class Materialize implements Optimizer {
         return mat;
       }
       return node;
-    }, null);
+    });
   }
 
   /** Print debug information */
@@ -0,0 +1,198 @@
+package common.plan.optimizer;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.plan.node.PlanNode;
+
+/**
+ * Applies stages of optimizers to a plan. A stage consists of steps, which are either a single optimizer, or a group of optimizers
+ * that is applied repeatedly until the plan does not change anymore. A group stops repeating if the stage took longer than the
+ * time budget. For every optimizer, the driver records how often it was applied, the time it took, and the number of nodes it
+ * rewrote.
+ */
+public class OptimizerDriver implements Optimizer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OptimizerDriver.class);
+
+  /** Maximal number of iterations of a group, in case the optimizers of a group undo each other */
+  private static final int MAX_ITERATIONS = 10;
+
+  private static class Step {
+
+    final List<Optimizer> optimizers;
+
+    final boolean fixpoint;
+
+    Step(List<Optimizer> optimizers, boolean fixpoint) {
+      this.optimizers = optimizers;
+      this.fixpoint = fixpoint;
+    }
+  }
+
+  /** Statistics of one kind of optimizer */
+  public static class Statistics {
+
+    int applications, changes;
+
+    long nanos;
+
+    long rewrittenNodes;
+
+    public int getApplications() {
+      return applications;
+    }
+
+    /** Number of applications that changed the plan */
+    public int getChanges() {
+      return changes;
+    }
+
+    public long getMillis() {
+      return nanos / 1_000_000;
+    }
+
+    /** Number of nodes of the new plans, which were not in the old plans */
+    public long getRewrittenNodes() {
+      return rewrittenNodes;
+    }
+  }
+
+  private final List<String> stageNames = new ArrayList<>();
+
+  private final List<List<Step>> stages = new ArrayList<>();
+
+  private long stageBudgetMillis = Long.MAX_VALUE;
+
+  private final Map<String, Statistics> statistics = new LinkedHashMap<>();
+
+  /** Start a new stage */
+  public OptimizerDriver stage(String name) {
+    stageNames.add(name);
+    stages.add(new ArrayList<>());
+    return this;
+  }
+
+  /** Add optimizers to the current stage, which are applied once, one after the other */
+  public OptimizerDriver then(Optimizer... optimizers) {
+    for (Optimizer o : optimizers) {
+      currentStage().add(new Step(Collections.singletonList(o), false));
+    }
+    return this;
+  }
+
+  /** Add a group of optimizers to the current stage, which is applied until the plan does not change anymore */
+  public OptimizerDriver fixpoint(Optimizer... optimizers) {
+    currentStage().add(new Step(Arrays.asList(optimizers), true));
+    return this;
+  }
+
+  private List<Step> currentStage() {
+    if (stages.isEmpty()) stage("");
+    return stages.get(stages.size() - 1);
+  }
+
+  /** Names of the stages, in the order of their application */
+  public List<String> getStageNames() {
+    return Collections.unmodifiableList(stageNames);
+  }
+
+  /** Optimizers of a stage, in the order of their first application; used for benchmarking them one by one */
+  public List<Optimizer> getOptimizers(String stage) {
+    int i = stageNames.indexOf(stage);
+    if (i < 0) throw new IllegalArgumentException("unknown stage " + stage);
+    List<Optimizer> result = new ArrayList<>();
+    for (Step step : stages.get(i)) {
+      result.addAll(step.optimizers);
+    }
+    return result;
+  }
+
+  /** Time after which the groups of a stage are not repeated anymore; every optimizer is applied at least once */
+  public void setStageBudget(long millis) {
+    this.stageBudgetMillis = millis;
+  }
+
+  @Override
+  public PlanNode apply(PlanNode root) {
+    return apply(root, null);
+  }
+
+  /**
+   * Apply all stages.
+   * @param debugBuilder if not null, append the plan after every optimizer, and check it with {@link PlanValidator}
+   */
+  public PlanNode apply(PlanNode root, StringBuilder debugBuilder) {
+    PlanValidator check = debugBuilder == null ? null : new PlanValidator(debugBuilder);
+    for (int i = 0; i < stages.size(); i++) {
+      if (debugBuilder != null) debugBuilder.append("\n\n").append(stageNames.get(i)).append("\n");
+      long start = System.currentTimeMillis();
+      for (Step step : stages.get(i)) {
+        boolean changed = true;
+        for (int iteration = 0; changed && iteration < (step.fixpoint ? MAX_ITERATIONS : 1); iteration++) {
+          if (iteration > 0 && System.currentTimeMillis() - start > stageBudgetMillis) {
+            LOG.warn("stage '" + stageNames.get(i) + "' exceeded its time budget, stopping at iteration " + iteration);
+            break;
+          }
+          changed = false;
+          for (Optimizer o : step.optimizers) {
+            PlanNode newRoot = apply(o, root, debugBuilder, check);
+            changed |= newRoot != root;
+            root = newRoot;
+          }
+        }
+      }
+    }
+    return root;
+  }
+
+  /** Apply one optimizer and update its statistics; returns the old root if the plan did not change */
+  private PlanNode apply(Optimizer o, PlanNode root, StringBuilder debugBuilder, PlanValidator check) {
+    Statistics stat = statistics.computeIfAbsent(o.getClass().getSimpleName(), k -> new Statistics());
+    PlanNode newRoot;
+    long start = System.nanoTime();
+    if (debugBuilder == null) {
+      newRoot = o.apply(root);
+    } else {
+      try {
+        newRoot = o.apply(root);
+        debugBuilder.append("applied ").append(o.getClass()).append(" \n");
+        debugBuilder.append(newRoot.toPrettyString()).append("\n");
+        check.apply(newRoot);
+      } catch (Exception e) {
+        System.err.println("some problems while applying " + o + " to plan");
+        System.err.println(root.toPrettyString());
+        LOG.error(e.getMessage());
+        debugBuilder.append("WARNING: ").append(e.getMessage());
+        newRoot = root;
+      }
+    }
+    stat.nanos += System.nanoTime() - start;
+    stat.applications++;
+
+    if (newRoot == root || (newRoot.hashCode() == root.hashCode() && newRoot.equals(root))) {
+      return root;
+    }
+    stat.changes++;
+    Set<PlanNode> oldNodes = new HashSet<>();
+    root.visit(oldNodes::add);
+    newRoot.visit(n -> {
+      if (!oldNodes.contains(n)) stat.rewrittenNodes++;
+    });
+    return newRoot;
+  }
+
+  /** Statistics for every kind of optimizer, in the order of their first application */
+  public Map<String, Statistics> getStatistics() {
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  /** Table with the statistics */
+  public String statisticsString() {
+    StringBuilder sb = new StringBuilder(String.format("%-28s %8s %8s %10s %10s%n", "optimizer", "applied", "changed", "time (ms)", "rewritten"));
+    statistics.forEach((name, s) -> sb.append(String.format("%-28s %8d %8d %10d %10d%n", name, s.applications, s.changes, s.getMillis(), s.rewrittenNodes)));
+    return sb.toString();
+  }
+}
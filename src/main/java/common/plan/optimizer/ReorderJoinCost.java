@@ -0,0 +1,236 @@
+package common.plan.optimizer;
+
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.plan.node.JoinNode;
+import common.plan.node.PlanNode;
+import common.statistics.CardinalityEstimator;
+import common.statistics.StatisticsCollector;
+
+/**
+ * Reorder joins based on estimated cardinalities. Uses dynamic programming over all subsets of the join leaves, producing bushy
+ * join trees; above {@link #DP_LIMIT} leaves it greedily joins the pair with the smallest result. A plan costs the sum of the sizes
+ * of its intermediate results, plus the cost of sorting the inputs of every join (the bash backend uses sort-merge joins).
+ * If there are no statistics for any leaf, the heuristic of {@link ReorderJoinLinear} is used.
+ */
+public class ReorderJoinCost extends ReorderJoinLinear {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReorderJoinCost.class);
+
+  /** Maximum number of leaves for the exhaustive search */
+  static final int DP_LIMIT = 12;
+
+  private final StatisticsCollector statistics;
+
+  private final double sortWeight;
+
+  public ReorderJoinCost() {
+    this(new StatisticsCollector());
+  }
+
+  public ReorderJoinCost(StatisticsCollector statistics) {
+    this(statistics, 1);
+  }
+
+  /**
+   * @param statistics statistics of input files
+   * @param sortWeight weight of sorting n rows (n log2 n), relative to writing n rows; use 0 for backends without sorting
+   */
+  public ReorderJoinCost(StatisticsCollector statistics, double sortWeight) {
+    this.statistics = statistics;
+    this.sortWeight = sortWeight;
+  }
+
+  /** Statistics of the input files used for the estimates */
+  public StatisticsCollector getStatistics() {
+    return statistics;
+  }
+
+  @Override
+  protected PlanNode reorder(JoinNode n) {
+    JoinInfo info = new JoinInfo();
+    analyze(n, info);
+    CardinalityEstimator estimator = new CardinalityEstimator(statistics);
+    // join trees are represented as bit masks of their leaves
+    if (info.leaves.size() >= Long.SIZE || info.leaves.stream().noneMatch(estimator::isKnown)) {
+      return reorderLinear(n, info);
+    }
+
+    int count = info.leaves.size();
+    double[] rows = new double[count];
+    double[][] distinct = new double[count][];
+    for (int i = 0; i < count; i++) {
+      PlanNode leaf = info.leaves.get(i);
+      rows[i] = estimator.rows(leaf);
+      distinct[i] = new double[leaf.getArity()];
+      for (int j = 0; j < distinct[i].length; j++) {
+        distinct[i][j] = estimator.distinct(leaf, j);
+      }
+    }
+
+    JoinTree best = count <= DP_LIMIT ? dynamicProgramming(info, rows, distinct) : greedy(info, rows, distinct);
+    List<Integer> leafOrder = new ArrayList<>();
+    best.leaves(leafOrder);
+    int[] newLeafOrder = leafOrder.stream().mapToInt(i -> i).toArray();
+    List<PlanNode> newLeaves = new ArrayList<>();
+    for (int i : newLeafOrder) {
+      newLeaves.add(info.leaves.get(i));
+    }
+
+    PlanNode result = build(best, info).project(getFinalProjection(info, newLeaves, newLeafOrder));
+    LOG.debug("join order {} with cost {}", best, best.cost);
+    return result.equals(n) ? n : result;
+  }
+
+  /** Estimated size of the join of the leaves in mask, assuming independent join conditions */
+  private double size(long mask, JoinInfo info, double[] rows, double[][] distinct) {
+    double size = 1;
+    for (int i = 0; i < rows.length; i++) {
+      if ((mask & (1L << i)) != 0) size *= rows[i];
+    }
+    for (int[] cond : info.joinConditions) {
+      if ((mask & (1L << cond[0])) != 0 && (mask & (1L << cond[2])) != 0) {
+        size /= Math.max(1, Math.max(distinct[cond[0]][cond[1]], distinct[cond[2]][cond[3]]));
+      }
+    }
+    return size;
+  }
+
+  /** Cost of joining two subplans, including the cost of the subplans */
+  private JoinTree join(JoinTree left, JoinTree right, double size) {
+    double cost = left.cost + right.cost + size + sortCost(left.size) + sortCost(right.size);
+    return new JoinTree(left, right, size, cost);
+  }
+
+  private double sortCost(double rows) {
+    return sortWeight * rows * Math.log(Math.max(2, rows)) / Math.log(2);
+  }
+
+  private JoinTree dynamicProgramming(JoinInfo info, double[] rows, double[][] distinct) {
+    int count = rows.length;
+    JoinTree[] best = new JoinTree[1 << count];
+    for (int i = 0; i < count; i++) {
+      best[1 << i] = new JoinTree(i, rows[i]);
+    }
+    // subsets in increasing order, so all proper subsets are handled before
+    for (int mask = 1; mask < best.length; mask++) {
+      if (Integer.bitCount(mask) < 2) continue;
+      double size = size(mask, info, rows, distinct);
+      // enumerate splits (left, right), considering each unordered pair twice to try both sides
+      for (int left = (mask - 1) & mask; left > 0; left = (left - 1) & mask) {
+        int right = mask & ~left;
+        JoinTree candidate = join(best[left], best[right], size);
+        if (best[mask] == null || candidate.cost < best[mask].cost) {
+          best[mask] = candidate;
+        }
+      }
+    }
+    return best[best.length - 1];
+  }
+
+  /** Greedy operator ordering: repeatedly join the two subplans with the smallest result */
+  private JoinTree greedy(JoinInfo info, double[] rows, double[][] distinct) {
+    List<JoinTree> trees = new ArrayList<>();
+    for (int i = 0; i < rows.length; i++) {
+      trees.add(new JoinTree(i, rows[i]));
+    }
+    while (trees.size() > 1) {
+      JoinTree best = null;
+      int bestI = -1, bestJ = -1;
+      for (int i = 0; i < trees.size(); i++) {
+        for (int j = 0; j < trees.size(); j++) {
+          if (i == j) continue;
+          JoinTree l = trees.get(i), r = trees.get(j);
+          double size = size(l.mask | r.mask, info, rows, distinct);
+          if (best == null || size < best.size || (size == best.size && join(l, r, size).cost < best.cost)) {
+            best = join(l, r, size);
+            bestI = i;
+            bestJ = j;
+          }
+        }
+      }
+      trees.remove(Math.max(bestI, bestJ));
+      trees.remove(Math.min(bestI, bestJ));
+      trees.add(best);
+    }
+    return trees.get(0);
+  }
+
+  /** Create the plan for a join tree; the columns of the result are the columns of its leaves, from left to right */
+  private PlanNode build(JoinTree tree, JoinInfo info) {
+    if (tree.leaf >= 0) {
+      return info.leaves.get(tree.leaf);
+    }
+    List<Integer> leftLeaves = new ArrayList<>(), rightLeaves = new ArrayList<>();
+    tree.left.leaves(leftLeaves);
+    tree.right.leaves(rightLeaves);
+    List<Integer> leftCols = new ArrayList<>(), rightCols = new ArrayList<>();
+    for (int[] cond : info.joinConditions) {
+      if ((tree.left.mask & (1L << cond[0])) != 0 && (tree.right.mask & (1L << cond[2])) != 0) {
+        leftCols.add(column(leftLeaves, cond[0], cond[1], info));
+        rightCols.add(column(rightLeaves, cond[2], cond[3], info));
+      } else if ((tree.left.mask & (1L << cond[2])) != 0 && (tree.right.mask & (1L << cond[0])) != 0) {
+        leftCols.add(column(leftLeaves, cond[2], cond[3], info));
+        rightCols.add(column(rightLeaves, cond[0], cond[1], info));
+      }
+    }
+    return build(tree.left, info).join(build(tree.right, info), //
+        leftCols.stream().mapToInt(i -> i).toArray(), //
+        rightCols.stream().mapToInt(i -> i).toArray());
+  }
+
+  /** Column index of column col of leaf in a join of leaves */
+  private int column(List<Integer> leaves, int leaf, int col, JoinInfo info) {
+    for (int i : leaves) {
+      if (i == leaf) return col;
+      col += info.leaves.get(i).getArity();
+    }
+    throw new IllegalStateException();
+  }
+
+  /** Join tree over leaf indices */
+  private static class JoinTree {
+
+    final int leaf;
+
+    final long mask;
+
+    final JoinTree left, right;
+
+    final double size, cost;
+
+    JoinTree(int leaf, double size) {
+      this.leaf = leaf;
+      this.mask = 1L << leaf;
+      this.left = this.right = null;
+      this.size = size;
+      this.cost = 0;
+    }
+
+    JoinTree(JoinTree left, JoinTree right, double size, double cost) {
+      this.leaf = -1;
+      this.mask = left.mask | right.mask;
+      this.left = left;
+      this.right = right;
+      this.size = size;
+      this.cost = cost;
+    }
+
+    void leaves(List<Integer> result) {
+      if (leaf >= 0) {
+        result.add(leaf);
+      } else {
+        left.leaves(result);
+        right.leaves(result);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return leaf >= 0 ? Integer.toString(leaf) : "(" + left + " ⋈ " + right + ")";
+    }
+  }
+}
@@ -17,13 +17,28 @@ public class ReorderJoinLinear implements Optimizer {
 
   @Override
   public PlanNode apply(PlanNode node) {
+    Set<PlanNode> outerJoins = outerJoins(node);
     return node.transform((o, n, op) -> {
-      if (n instanceof JoinNode && !(PlanNode.parent(op) instanceof JoinNode)) {
+      if (n instanceof JoinNode && outerJoins.contains(o)) {
         return reorder((JoinNode) n);
       } else {
         return n;
       }
-    }, new LinkedList<>());
+    });
+  }
+
+  /**
+   * Joins that are used by a node that is not a join (or that are the root). The joins below them are reordered together with
+   * them, see {@link #analyze(PlanNode, JoinInfo)}.
+   */
+  protected static Set<PlanNode> outerJoins(PlanNode root) {
+    Set<PlanNode> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    if (root instanceof JoinNode) result.add(root);
+    root.visit(p -> {
+      if (p instanceof JoinNode) return;
+      p.children().stream().filter(c -> c instanceof JoinNode).forEach(result::add);
+    });
+    return result;
   }
 
   /** Search for index of highest value, which is not yet used
@@ -210,6 +225,8 @@ public class ReorderJoinLinear implements Optimizer {
       JoinNode j = (JoinNode) n;
       if (info.root == null) info.root = j;
 
+      // the columns of the join start with the columns of its first leaf, which is not leaf 0 if the join is a right child
+      int firstLeaf = info.leaves.size();
       analyze(j.getLeft(), info);
       int leftChildren = info.leaves.size();
       analyze(j.getRight(), info);
@@ -218,7 +235,7 @@ public class ReorderJoinLinear implements Optimizer {
       int[] rightPrj = j.getRightProjection();
       for (int i = 0; i < leftPrj.length; i++) {
         int[] prj = Tools.concat(
-                joinIdxToLeafIdx(info.leaves, 0, leftPrj[i]), //
+                joinIdxToLeafIdx(info.leaves, firstLeaf, leftPrj[i]), //
                 joinIdxToLeafIdx(info.leaves, leftChildren, rightPrj[i])
         );
         info.joinConditions.add(prj);
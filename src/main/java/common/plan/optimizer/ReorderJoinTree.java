@@ -15,13 +15,14 @@ public class ReorderJoinTree extends ReorderJoinLinear {
 
   @Override
   public PlanNode apply(PlanNode node) {
+    Set<PlanNode> outerJoins = outerJoins(node);
     return node.transform((o, n, op) -> {
-      if (n instanceof JoinNode && !(PlanNode.parent(op) instanceof JoinNode)) {
+      if (n instanceof JoinNode && outerJoins.contains(o)) {
         return reorder((JoinNode) n);
       } else {
         return n;
       }
-    }, new LinkedList<>());
+    });
   }
 
   @Override
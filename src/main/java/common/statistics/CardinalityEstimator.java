@@ -0,0 +1,298 @@
+package common.statistics;
+
+import java.util.*;
+
+import bashlog.plan.TSVFileNode;
+import common.plan.node.*;
+
+/**
+ * Estimate the number of rows and distinct values per column of a plan node, based on the statistics of the input files.
+ * Uses the usual independence assumptions: a join on column c produces |L|*|R| / max(distinct_L(c), distinct_R(c)) rows.
+ * Inputs without statistics (e.g., arbitrary bash commands) are assumed to have {@link #DEFAULT_ROWS} rows.
+ */
+public class CardinalityEstimator {
+
+  /** Number of rows assumed for relations without statistics */
+  public static final double DEFAULT_ROWS = 10_000;
+
+  /** Number of iterations assumed for a recursion */
+  private static final int RECURSION_ITERATIONS = 3;
+
+  private final StatisticsCollector collector;
+
+  private final Map<PlanNode, Estimate> cache = new IdentityHashMap<>();
+
+  private final Map<PlaceholderNode, Estimate> placeholders = new HashMap<>();
+
+  private final Map<PlanNode, Boolean> hasPlaceholder = new IdentityHashMap<>();
+
+  public CardinalityEstimator(StatisticsCollector collector) {
+    this.collector = collector;
+  }
+
+  /** Estimated number of rows */
+  public double rows(PlanNode node) {
+    return estimate(node).rows;
+  }
+
+  /** Estimated number of distinct values of a column */
+  public double distinct(PlanNode node, int column) {
+    return estimate(node).distinct[column];
+  }
+
+  /** Whether the estimate is based on statistics for all inputs of the plan */
+  public boolean isKnown(PlanNode node) {
+    return estimate(node).known;
+  }
+
+  /** Estimate for a node */
+  public Estimate estimate(PlanNode node) {
+    Estimate result = cache.get(node);
+    if (result == null) {
+      result = compute(node);
+      // plans with placeholders depend on the estimate bound to the placeholder
+      if (!hasPlaceholder(node)) {
+        cache.put(node, result);
+      }
+    }
+    return result;
+  }
+
+  private boolean hasPlaceholder(PlanNode node) {
+    Boolean result = hasPlaceholder.get(node);
+    if (result == null) {
+      result = node instanceof PlaceholderNode || node.children().stream().anyMatch(this::hasPlaceholder);
+      hasPlaceholder.put(node, result);
+    }
+    return result;
+  }
+
+  private Estimate compute(PlanNode node) {
+    if (node instanceof TSVFileNode) {
+      return file(((TSVFileNode) node).getPath(), node.getArity());
+    } else if (node instanceof BashNode) {
+      String file = ((BashNode) node).getCatFile();
+      return file == null ? Estimate.unknown(node.getArity()) : file(file, node.getArity());
+    } else if (node instanceof FactNode) {
+      return facts((FactNode) node);
+    } else if (node instanceof PlaceholderNode) {
+      Estimate e = placeholders.get(node);
+      return e == null ? Estimate.unknown(node.getArity()) : e;
+    } else if (node instanceof ConstantEqualityFilterNode) {
+      ConstantEqualityFilterNode f = (ConstantEqualityFilterNode) node;
+      Estimate child = estimate(f.getTable());
+      double rows = child.rows / Math.max(1, child.distinct[f.getField()]);
+      if (child.base != null && child.baseColumns[f.getField()] >= 0) {
+        // use frequencies of the input file, scaled down by the filters applied so far
+        double selectivity = child.base.estimateRows(child.baseColumns[f.getField()], f.getValue().toString()) / Math.max(1, child.base.getRows());
+        rows = child.rows * selectivity;
+      }
+      Estimate result = child.withRows(rows);
+      result.distinct[f.getField()] = Math.min(1, rows);
+      return result;
+    } else if (node instanceof VariableEqualityFilterNode) {
+      VariableEqualityFilterNode f = (VariableEqualityFilterNode) node;
+      Estimate child = estimate(f.getTable());
+      double d1 = child.distinct[f.getField1()], d2 = child.distinct[f.getField2()];
+      Estimate result = child.withRows(child.rows / Math.max(1, Math.max(d1, d2)));
+      result.base = null;
+      result.distinct[f.getField1()] = result.distinct[f.getField2()] = Math.min(result.rows, Math.min(d1, d2));
+      return result;
+    } else if (node instanceof ProjectNode) {
+      return project((ProjectNode) node);
+    } else if (node instanceof AntiJoinNode) {
+      // upper bound; the removed rows cannot be estimated without knowing the overlap
+      return estimate(((AntiJoinNode) node).getLeft());
+    } else if (node instanceof JoinNode && node.getArity() == ((JoinNode) node).getLeft().getArity() + ((JoinNode) node).getRight().getArity()) {
+      return join((JoinNode) node);
+    } else if (node instanceof UnionNode) {
+      return union(node.getArity(), node.children());
+    } else if (node instanceof RecursionNode) {
+      return recursion((RecursionNode) node);
+    } else if (node instanceof MaterializationNode) {
+      MaterializationNode m = (MaterializationNode) node;
+      placeholders.put(m.getReuseNode(), estimate(m.getReusedPlan()));
+      return estimate(m.getMainPlan());
+    } else if (node instanceof MultiOutputNode) {
+      MultiOutputNode mo = (MultiOutputNode) node;
+      for (int i = 0; i < mo.reusedPlans().size(); i++) {
+        placeholders.put((PlaceholderNode) mo.reuseNodes().get(i), estimate(mo.reusedPlans().get(i)));
+      }
+      return estimate(mo.getMainPlan());
+    } else if (node instanceof MultiFilterNode) {
+      MultiFilterNode mf = (MultiFilterNode) node;
+      placeholders.put(mf.placeholders().get(0), estimate(mf.getTable()));
+      return union(node.getArity(), mf.getFilter());
+    }
+
+    // other nodes (e.g., sort): assume at most as many rows as the largest child
+    Estimate result = Estimate.unknown(node.getArity());
+    boolean known = !node.children().isEmpty();
+    double rows = 0;
+    for (PlanNode child : node.children()) {
+      Estimate e = estimate(child);
+      rows = Math.max(rows, e.rows);
+      known &= e.known;
+    }
+    if (known) {
+      result = Estimate.unknown(node.getArity()).withRows(rows);
+      result.known = true;
+      if (node.children().size() == 1 && node.children().iterator().next().getArity() == node.getArity()) {
+        Estimate child = estimate(node.children().iterator().next());
+        result = child.withRows(child.rows);
+      }
+    }
+    return result;
+  }
+
+  private Estimate file(String path, int arity) {
+    RelationStatistics stats = collector == null ? null : collector.get(path, arity);
+    if (stats == null) {
+      return Estimate.unknown(arity);
+    }
+    Estimate e = new Estimate(stats.getRows(), new double[arity], true);
+    e.base = stats;
+    e.baseColumns = new int[arity];
+    for (int i = 0; i < arity; i++) {
+      e.distinct[i] = stats.getDistinct(i);
+      e.baseColumns[i] = i;
+    }
+    return e;
+  }
+
+  private Estimate facts(FactNode node) {
+    List<Comparable<?>[]> facts = node.getFacts();
+    Estimate e = new Estimate(facts.size(), new double[node.getArity()], true);
+    for (int i = 0; i < node.getArity(); i++) {
+      Set<Comparable<?>> values = new HashSet<>();
+      for (Comparable<?>[] fact : facts) {
+        values.add(fact[i]);
+      }
+      e.distinct[i] = values.size();
+    }
+    return e;
+  }
+
+  private Estimate project(ProjectNode p) {
+    Estimate child = estimate(p.getTable());
+    int[] projection = p.getProjection();
+    Estimate e = new Estimate(child.rows, new double[projection.length], child.known);
+    e.base = child.base;
+    e.baseColumns = new int[projection.length];
+    double maxRows = 1;
+    for (int i = 0; i < projection.length; i++) {
+      if (projection[i] >= 0) {
+        e.distinct[i] = child.distinct[projection[i]];
+        e.baseColumns[i] = child.baseColumns == null ? -1 : child.baseColumns[projection[i]];
+      } else {
+        e.distinct[i] = 1;
+        e.baseColumns[i] = -1;
+      }
+      maxRows *= Math.max(1, e.distinct[i]);
+    }
+    // duplicates are removed
+    e.rows = Math.min(e.rows, maxRows);
+    return e;
+  }
+
+  private Estimate join(JoinNode j) {
+    Estimate left = estimate(j.getLeft()), right = estimate(j.getRight());
+    double rows = left.rows * right.rows;
+    int[] lp = j.getLeftProjection(), rp = j.getRightProjection();
+    double[] distinct = new double[left.distinct.length + right.distinct.length];
+    System.arraycopy(left.distinct, 0, distinct, 0, left.distinct.length);
+    System.arraycopy(right.distinct, 0, distinct, left.distinct.length, right.distinct.length);
+    for (int i = 0; i < lp.length; i++) {
+      double dl = left.distinct[lp[i]], dr = right.distinct[rp[i]];
+      rows /= Math.max(1, Math.max(dl, dr));
+      distinct[lp[i]] = distinct[left.distinct.length + rp[i]] = Math.min(dl, dr);
+    }
+    Estimate e = new Estimate(rows, distinct, left.known && right.known);
+    for (int i = 0; i < distinct.length; i++) {
+      distinct[i] = Math.min(distinct[i], rows);
+    }
+    return e;
+  }
+
+  private Estimate union(int arity, Collection<PlanNode> children) {
+    Estimate e = new Estimate(0, new double[arity], true);
+    for (PlanNode child : children) {
+      Estimate c = estimate(child);
+      e.rows += c.rows;
+      e.known &= c.known;
+      for (int i = 0; i < arity; i++) {
+        e.distinct[i] += c.distinct[i];
+      }
+    }
+    return e.withRows(e.rows);
+  }
+
+  private Estimate recursion(RecursionNode r) {
+    Estimate exit = estimate(r.getExitPlan());
+    placeholders.put(r.getDelta(), exit);
+    placeholders.put(r.getFull(), exit);
+    Estimate step = estimate(r.getRecursivePlan());
+    Estimate e = new Estimate(exit.rows + RECURSION_ITERATIONS * step.rows, new double[r.getArity()], exit.known && step.known);
+    double maxRows = 1;
+    for (int i = 0; i < e.distinct.length; i++) {
+      e.distinct[i] = exit.distinct[i] + RECURSION_ITERATIONS * step.distinct[i];
+      maxRows *= Math.max(1, e.distinct[i]);
+    }
+    return e.withRows(Math.min(e.rows, maxRows));
+  }
+
+  /** Estimated rows and distinct values per column */
+  public static class Estimate {
+
+    private double rows;
+
+    private final double[] distinct;
+
+    private boolean known;
+
+    /** Statistics of the input file, if the columns can be traced back to it through filters and projections */
+    private RelationStatistics base;
+
+    private int[] baseColumns;
+
+    Estimate(double rows, double[] distinct, boolean known) {
+      this.rows = rows;
+      this.distinct = distinct;
+      this.known = known;
+    }
+
+    static Estimate unknown(int arity) {
+      double[] distinct = new double[arity];
+      Arrays.fill(distinct, DEFAULT_ROWS);
+      return new Estimate(DEFAULT_ROWS, distinct, false);
+    }
+
+    /** Copy with a different number of rows; distinct values are limited to the number of rows */
+    Estimate withRows(double rows) {
+      Estimate e = new Estimate(rows, distinct.clone(), known);
+      for (int i = 0; i < distinct.length; i++) {
+        e.distinct[i] = Math.min(e.distinct[i], rows);
+      }
+      e.base = base;
+      e.baseColumns = baseColumns;
+      return e;
+    }
+
+    public double getRows() {
+      return rows;
+    }
+
+    public double getDistinct(int column) {
+      return distinct[column];
+    }
+
+    public boolean isKnown() {
+      return known;
+    }
+
+    @Override
+    public String toString() {
+      return "rows " + rows + ", distinct " + Arrays.toString(distinct) + (known ? "" : " (unknown inputs)");
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package common.statistics;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Row count, distinct values per column, and the most frequent values per column of a relation.
+ * Distinct counts and frequencies are estimates if the relation was large.
+ */
+public class RelationStatistics {
+
+  private final long rows;
+
+  private final long[] distinct;
+
+  /** column -> value -> (approximate) number of rows with that value */
+  private final List<Map<String, Long>> heavyHitters;
+
+  public RelationStatistics(long rows, long[] distinct, List<Map<String, Long>> heavyHitters) {
+    if (distinct.length != heavyHitters.size()) {
+      throw new IllegalArgumentException("expected the same number of columns for distinct counts and heavy hitters");
+    }
+    this.rows = rows;
+    this.distinct = distinct;
+    this.heavyHitters = heavyHitters;
+  }
+
+  public int getArity() {
+    return distinct.length;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  /** Number of distinct values in a column */
+  public long getDistinct(int column) {
+    return distinct[column];
+  }
+
+  /** Most frequent values of a column, with the number of rows in which they occur */
+  public Map<String, Long> getHeavyHitters(int column) {
+    return Collections.unmodifiableMap(heavyHitters.get(column));
+  }
+
+  /** Estimated number of rows which have the value in a column */
+  public double estimateRows(int column, String value) {
+    Map<String, Long> hh = heavyHitters.get(column);
+    Long count = hh.get(value);
+    if (count != null) {
+      return count;
+    }
+    long remainingRows = rows - hh.values().stream().mapToLong(Long::longValue).sum();
+    long remainingValues = distinct[column] - hh.size();
+    return Math.max(0, remainingRows) / (double) Math.max(1, remainingValues);
+  }
+
+  /** Write statistics in a line based format; the key allows to check whether they are still up to date */
+  public void write(Path path, String key) throws IOException {
+    try (PrintWriter pw = new PrintWriter(Files.newBufferedWriter(path, StandardCharsets.UTF_8))) {
+      pw.println("key\t" + key);
+      pw.println("rows\t" + rows);
+      pw.println("arity\t" + distinct.length);
+      for (int i = 0; i < distinct.length; i++) {
+        pw.println("distinct\t" + i + "\t" + distinct[i]);
+        for (Map.Entry<String, Long> e : heavyHitters.get(i).entrySet()) {
+          pw.println("heavy\t" + i + "\t" + e.getValue() + "\t" + e.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * Read statistics written by {@link #write(Path, String)}
+   * @return statistics, or null if the key differs or the file is not readable
+   */
+  public static RelationStatistics read(Path path, String key) {
+    try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      if (line == null || !line.equals("key\t" + key)) {
+        return null;
+      }
+      long rows = -1;
+      long[] distinct = null;
+      List<Map<String, Long>> heavyHitters = new ArrayList<>();
+      while ((line = reader.readLine()) != null) {
+        String[] parts = line.split("\t", 4);
+        switch (parts[0]) {
+          case "rows":
+            rows = Long.parseLong(parts[1]);
+            break;
+          case "arity":
+            distinct = new long[Integer.parseInt(parts[1])];
+            for (int i = 0; i < distinct.length; i++) {
+              heavyHitters.add(new HashMap<>());
+            }
+            break;
+          case "distinct":
+            distinct[Integer.parseInt(parts[1])] = Long.parseLong(parts[2]);
+            break;
+          case "heavy":
+            heavyHitters.get(Integer.parseInt(parts[1])).put(parts.length > 3 ? parts[3] : "", Long.parseLong(parts[2]));
+            break;
+          default:
+            return null;
+        }
+      }
+      if (rows < 0 || distinct == null) {
+        return null;
+      }
+      return new RelationStatistics(rows, distinct, heavyHitters);
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "rows " + rows + ", distinct " + Arrays.toString(distinct) + ", heavy hitters " + heavyHitters;
+  }
+}
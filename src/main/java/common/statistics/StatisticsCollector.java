@@ -0,0 +1,196 @@
+package common.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.TSVReader;
+
+/**
+ * Collect statistics of TSV files. The statistics are stored in a sidecar file (.name.stats) next to the file,
+ * and are recomputed when the modification time or size of the file changes.
+ */
+public class StatisticsCollector {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StatisticsCollector.class);
+
+  /** Number of hash values kept for estimating the distinct values of a column */
+  private static final int DISTINCT_SKETCH_SIZE = 1024;
+
+  /** Number of counters for finding the most frequent values of a column */
+  private static final int HEAVY_HITTER_COUNTERS = 32;
+
+  /** Directory for resolving relative paths */
+  private final File baseDir;
+
+  private final Map<String, RelationStatistics> cache = new HashMap<>();
+
+  public StatisticsCollector() {
+    this(new File("."));
+  }
+
+  public StatisticsCollector(File baseDir) {
+    this.baseDir = baseDir;
+  }
+
+  /**
+   * Statistics of a TSV file
+   * @return statistics, or null if the file cannot be read
+   */
+  public synchronized RelationStatistics get(String path, int arity) {
+    File file = resolve(path);
+    if (!file.isFile()) {
+      return null;
+    }
+    String key = file.lastModified() + "\t" + file.length() + "\t" + arity;
+    String cacheKey = file.getAbsolutePath();
+    RelationStatistics stats = cache.get(cacheKey + "\t" + key);
+    if (stats != null) {
+      return stats;
+    }
+
+    File sidecar = sidecar(file);
+    stats = RelationStatistics.read(sidecar.toPath(), key);
+    if (stats == null) {
+      try {
+        stats = collect(file, arity);
+      } catch (IOException e) {
+        LOG.warn("could not collect statistics of {}: {}", file, e.getMessage());
+        return null;
+      }
+      try {
+        stats.write(sidecar.toPath(), key);
+      } catch (IOException e) {
+        LOG.debug("could not write statistics to {}", sidecar);
+      }
+    }
+    cache.put(cacheKey + "\t" + key, stats);
+    return stats;
+  }
+
+  /** File of a path, relative paths are resolved against the base directory */
+  public File resolve(String path) {
+    File file = new File(path);
+    if (!file.isAbsolute()) {
+      file = new File(baseDir, path);
+    }
+    return file;
+  }
+
+  static File sidecar(File file) {
+    return new File(file.getAbsoluteFile().getParentFile(), "." + file.getName() + ".stats");
+  }
+
+  /** Scan the file once, counting rows, estimating distinct values and heavy hitters of every column */
+  public static RelationStatistics collect(File file, int arity) throws IOException {
+    long rows = 0;
+    DistinctSketch[] distinct = new DistinctSketch[arity];
+    HeavyHitters[] heavyHitters = new HeavyHitters[arity];
+    for (int i = 0; i < arity; i++) {
+      distinct[i] = new DistinctSketch(DISTINCT_SKETCH_SIZE);
+      heavyHitters[i] = new HeavyHitters(HEAVY_HITTER_COUNTERS);
+    }
+
+    try (TSVReader reader = new TSVReader(file)) {
+      for (List<String> row : reader) {
+        rows++;
+        for (int i = 0; i < arity; i++) {
+          String value = i < row.size() ? row.get(i) : "";
+          distinct[i].add(value);
+          heavyHitters[i].add(value);
+        }
+      }
+    }
+
+    long[] distinctCounts = new long[arity];
+    List<Map<String, Long>> hh = new ArrayList<>();
+    for (int i = 0; i < arity; i++) {
+      distinctCounts[i] = Math.min(rows, distinct[i].estimate());
+      hh.add(heavyHitters[i].frequent(rows / HEAVY_HITTER_COUNTERS));
+    }
+    return new RelationStatistics(rows, distinctCounts, hh);
+  }
+
+  /** K minimum values sketch: keep the k smallest hash values, and estimate the number of distinct values from the k-th one */
+  static class DistinctSketch {
+
+    private final int k;
+
+    private final TreeSet<Long> minHashes = new TreeSet<>();
+
+    DistinctSketch(int k) {
+      this.k = k;
+    }
+
+    void add(String value) {
+      long h = hash(value) >>> 1; // non-negative
+      if (minHashes.size() < k) {
+        minHashes.add(h);
+      } else if (h < minHashes.last() && minHashes.add(h)) {
+        minHashes.pollLast();
+      }
+    }
+
+    long estimate() {
+      if (minHashes.size() < k) {
+        return minHashes.size();
+      }
+      double kth = minHashes.last() / (double) Long.MAX_VALUE;
+      return Math.round((k - 1) / kth);
+    }
+
+    /** 64 bit FNV-1a hash of the UTF-8 bytes, with a final mixing step */
+    static long hash(String value) {
+      long h = 0xcbf29ce484222325L;
+      for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+        h ^= b & 0xff;
+        h *= 0x100000001b3L;
+      }
+      h ^= h >>> 33;
+      h *= 0xff51afd7ed558ccdL;
+      h ^= h >>> 33;
+      return h;
+    }
+  }
+
+  /** Misra-Gries summary; counts are lower bounds of the real frequencies */
+  static class HeavyHitters {
+
+    private final int counters;
+
+    private final Map<String, Long> counts = new HashMap<>();
+
+    HeavyHitters(int counters) {
+      this.counters = counters;
+    }
+
+    void add(String value) {
+      Long count = counts.get(value);
+      if (count != null) {
+        counts.put(value, count + 1);
+      } else if (counts.size() < counters) {
+        counts.put(value, 1L);
+      } else {
+        Iterator<Map.Entry<String, Long>> it = counts.entrySet().iterator();
+        while (it.hasNext()) {
+          Map.Entry<String, Long> e = it.next();
+          if (e.getValue() <= 1) it.remove();
+          else e.setValue(e.getValue() - 1);
+        }
+      }
+    }
+
+    /** Values whose count is above the threshold */
+    Map<String, Long> frequent(long threshold) {
+      Map<String, Long> result = new HashMap<>();
+      counts.forEach((value, count) -> {
+        if (count > threshold) result.put(value, count);
+      });
+      return result;
+    }
+  }
+}
@@ -0,0 +1,394 @@
+package experiments.lubm;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+
+import bashlog.BashlogCompiler;
+import bashlog.BashlogEvaluator;
+import common.SimpleFactsSet;
+import common.parser.Program;
+import common.plan.optimizer.ReorderJoinCost;
+import experiments.lubm.generator.Tsv3Writer;
+import javalog.JavalogEvaluator;
+
+/**
+ * Run the LUBM queries on increasing numbers of universities, and report compile time, execution time, peak memory and output
+ * cardinality of every query and engine as CSV or JSON. Missing LUBM data is generated with {@link Tsv3Writer}.
+ *
+ * Example: java -cp bashlog.jar experiments.lubm.LUBMBenchmark --universities 1,2,5,10 --output lubm.csv
+ */
+public class LUBMBenchmark {
+
+  /** Command line arguments */
+  public static class Args {
+
+    @Parameter(names = { "--help", "-h" }, description = "help", help = true, hidden = true)
+    public boolean help;
+
+    @Parameter(names = "--universities", description = "numbers of universities (comma separated)")
+    private List<Integer> universities = Arrays.asList(1);
+
+    @Parameter(names = "--engines", description = "engines to run (comma separated); bashlog, bashlog-cost, javalog")
+    private List<String> engines = Arrays.asList("bashlog", "javalog");
+
+    @Parameter(names = "--queries", description = "numbers of the LUBM queries (comma separated), default all")
+    private List<Integer> queries = new ArrayList<>();
+
+    @Parameter(names = "--repetitions", description = "number of runs of every query")
+    private int repetitions = 1;
+
+    @Parameter(names = "--timeout", description = "stop bash scripts after this many seconds")
+    private int timeout = 3600;
+
+    @Parameter(names = "--data-dir", description = "directory for the generated LUBM data, one subdirectory per number of universities")
+    private String dataDir = "data/lubm/";
+
+    @Parameter(names = "--query-dir", description = "directory with tbox.txt and queries.txt")
+    private String queryDir = "data/lubm";
+
+    @Parameter(names = "--work-dir", description = "working directory of the bash scripts")
+    private String workDir = "/tmp/bashlog-lubm-benchmark/";
+
+    @Parameter(names = "--format", description = "csv or json")
+    private String format = "csv";
+
+    @Parameter(names = "--output", description = "output file, default stdout")
+    private String output;
+  }
+
+  /** Measurements of one run of a query */
+  public static class Measurement {
+
+    String engine, query, error = "";
+
+    int universities, run;
+
+    /** Times in seconds */
+    double compileTime = Double.NaN, executionTime = Double.NaN;
+
+    /** Peak resident set size of the script's processes for bash, peak heap usage for engines running in the JVM; -1 if unknown */
+    long peakMemoryKB = -1;
+
+    long rows = -1;
+
+    static final String CSV_HEADER = "engine,universities,query,run,compile_s,execution_s,peak_memory_kb,rows,error";
+
+    String toCSV() {
+      return String.format(Locale.ROOT, "%s,%d,%s,%d,%.6f,%.6f,%d,%d,%s", engine, universities, query, run, compileTime, executionTime,
+          peakMemoryKB, rows, error.replaceAll("[,\n\r]", " "));
+    }
+
+    String toJSON() {
+      return String.format(Locale.ROOT,
+          "{\"engine\": \"%s\", \"universities\": %d, \"query\": \"%s\", \"run\": %d, \"compile_s\": %s, \"execution_s\": %s, "
+              + "\"peak_memory_kb\": %d, \"rows\": %d, \"error\": \"%s\"}",
+          engine, universities, query, run, json(compileTime), json(executionTime), peakMemoryKB, rows,
+          error.replace("\\", "\\\\").replace("\"", "\\\"").replaceAll("[\n\r\t]", " "));
+    }
+
+    private static String json(double d) {
+      return Double.isNaN(d) ? "null" : String.format(Locale.ROOT, "%.6f", d);
+    }
+  }
+
+  /** Evaluates a query and measures it */
+  interface Engine {
+
+    void run(Program program, String relation, Measurement m) throws Exception;
+  }
+
+  private final Args args;
+
+  public LUBMBenchmark(Args args) {
+    this.args = args;
+  }
+
+  private Engine engine(String name) {
+    switch (name) {
+      case "bashlog":
+        return (p, relation, m) -> runBash(p, relation, false, m);
+      case "bashlog-cost":
+        return (p, relation, m) -> runBash(p, relation, true, m);
+      case "javalog":
+        return this::runJavalog;
+      default:
+        throw new IllegalArgumentException("unknown engine " + name + ", supported are bashlog, bashlog-cost, javalog");
+    }
+  }
+
+  /** Run all queries on all data sizes, and write a line for every measurement */
+  public void run(PrintStream out) throws IOException {
+    Map<String, Engine> engines = new LinkedHashMap<>();
+    args.engines.forEach(name -> engines.put(name, engine(name)));
+    boolean json = "json".equals(args.format);
+    out.println(json ? "[" : Measurement.CSV_HEADER);
+    boolean first = true;
+
+    for (int universities : args.universities) {
+      String dir = new File(args.dataDir, Integer.toString(universities)).getAbsolutePath() + "/";
+      if (!new File(dir + "all").exists()) {
+        System.err.println("generating LUBM(" + universities + ") in " + dir);
+        Tsv3Writer.generate(universities, 0, 0, dir);
+      }
+      Program program = BashlogLUBM.lubmProgram3(dir, args.queryDir);
+
+      for (int i = 1; i <= BashlogLUBM.queries.length; i++) {
+        if (!args.queries.isEmpty() && !args.queries.contains(i)) continue;
+        String relation = BashlogLUBM.queries[i - 1];
+        for (Map.Entry<String, Engine> engine : engines.entrySet()) {
+          for (int run = 0; run < args.repetitions; run++) {
+            Measurement m = new Measurement();
+            m.engine = engine.getKey();
+            m.universities = universities;
+            m.query = relation;
+            m.run = run;
+            try {
+              engine.getValue().run(program, relation, m);
+            } catch (Exception e) {
+              m.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+            }
+            System.err.println(m.toCSV());
+            out.println(json ? (first ? "  " : ", ") + m.toJSON() : m.toCSV());
+            out.flush();
+            first = false;
+          }
+        }
+      }
+    }
+    if (json) {
+      out.println("]");
+    }
+  }
+
+  private void runBash(Program program, String relation, boolean costBasedJoinOrder, Measurement m) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    BashlogCompiler bc = BashlogCompiler.prepareQuery(program, relation);
+    if (costBasedJoinOrder) {
+      bc.setJoinOrder(new ReorderJoinCost());
+    }
+    String script = bc.compile();
+    m.compileTime = (System.nanoTime() - start) * 1e-9;
+
+    File workDir = new File(args.workDir);
+    FileUtils.forceMkdir(new File(workDir, "tmp"));
+    FileUtils.cleanDirectory(new File(workDir, "tmp"));
+    Path scriptFile = Files.createTempFile("bashlog-lubm-", ".sh");
+    Path pidFile = Files.createTempFile("bashlog-lubm-pid-", "");
+    Files.write(scriptFile, script.getBytes());
+    try {
+      // own process group, so that the memory of all processes of the script can be measured, and the script can be stopped
+      start = System.nanoTime();
+      List<String> cmd = new ArrayList<>();
+      if (BashlogEvaluator.SETSID_AVAILABLE) {
+        cmd.add("setsid");
+      }
+      cmd.addAll(Arrays.asList("/bin/bash", "-c", "echo $$ > \"$0\"; exec /bin/bash \"$1\"", pidFile.toString(), scriptFile.toString()));
+      Process proc = new ProcessBuilder(cmd).directory(workDir).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      proc.getOutputStream().close();
+      MemorySampler sampler = new MemorySampler(pidFile, BashlogEvaluator.SETSID_AVAILABLE);
+      sampler.start();
+
+      long[] rows = new long[1];
+      Thread reader = new Thread(() -> {
+        try (InputStream in = new BufferedInputStream(proc.getInputStream())) {
+          int c;
+          while ((c = in.read()) >= 0) {
+            if (c == '\n') rows[0]++;
+          }
+        } catch (IOException e) {
+          // script was stopped
+        }
+      });
+      reader.start();
+
+      // wait until all output was read; processes of the script may still write after the script itself has finished
+      reader.join(TimeUnit.SECONDS.toMillis(args.timeout));
+      boolean done = !reader.isAlive() && proc.waitFor(Math.max(0, args.timeout - (System.nanoTime() - start) / 1_000_000_000), TimeUnit.SECONDS);
+      m.executionTime = (System.nanoTime() - start) * 1e-9;
+      if (!done) {
+        m.error = "timeout after " + args.timeout + "s";
+      }
+      sampler.stopGroup();
+      proc.destroy();
+      proc.waitFor();
+      reader.join();
+      sampler.join();
+      m.peakMemoryKB = sampler.peakKB;
+      if (done) {
+        m.rows = rows[0];
+        if (proc.exitValue() != 0) m.error = "exit code " + proc.exitValue();
+      }
+    } finally {
+      Files.deleteIfExists(scriptFile);
+      Files.deleteIfExists(pidFile);
+      FileUtils.cleanDirectory(new File(workDir, "tmp"));
+    }
+  }
+
+  private void runJavalog(Program program, String relation, Measurement m) throws Exception {
+    List<MemoryPoolMXBean> heap = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        heap.add(pool);
+        pool.resetPeakUsage();
+      }
+    }
+    JavalogEvaluator evaluator = new JavalogEvaluator(args.workDir);
+    m.rows = evaluator.evaluate(program, new SimpleFactsSet(), Collections.singleton(relation)).getByRelation(relation).count();
+    Map<String, Long> timing = evaluator.getTiming();
+    m.compileTime = timing.get("compile") * 1e-9;
+    m.executionTime = timing.get("eval") * 1e-9;
+    m.peakMemoryKB = heap.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() / 1024;
+  }
+
+  /**
+   * Samples the resident set size of all processes in the process group of a script, via /proc. Short peaks between two samples are
+   * missed, so the result is a lower bound. If the script does not have its own process group (no setsid), the descendants of the
+   * script are sampled instead, which misses processes that were moved to init.
+   */
+  private static class MemorySampler extends Thread {
+
+    private static final long INTERVAL_MS = 20;
+
+    private final Path pidFile;
+
+    /** Whether the script is the leader of its own process group */
+    private final boolean ownGroup;
+
+    private volatile boolean stopped = false;
+
+    /** Process id of the script, which is the id of its process group if it has its own */
+    private String pgid;
+
+    long peakKB = -1;
+
+    MemorySampler(Path pidFile, boolean ownGroup) {
+      this.pidFile = pidFile;
+      this.ownGroup = ownGroup;
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      File[] procDirs;
+      while (!stopped && (procDirs = new File("/proc").listFiles()) != null) {
+        if (groupId() != null) {
+          long sum = 0;
+          for (String pid : processes(procDirs)) {
+            sum += rssKB(new File("/proc", pid));
+          }
+          if (sum > 0) peakKB = Math.max(peakKB, sum);
+        }
+        try {
+          Thread.sleep(INTERVAL_MS);
+        } catch (InterruptedException e) {
+          return;
+        }
+      }
+    }
+
+    private String groupId() {
+      if (pgid == null) {
+        try {
+          String pid = new String(Files.readAllBytes(pidFile)).trim();
+          pgid = pid.isEmpty() ? null : pid;
+        } catch (IOException e) {
+          // not yet written
+        }
+      }
+      return pgid;
+    }
+
+    /** Process ids of the script: the members of its process group, or the script and its descendants */
+    private Set<String> processes(File[] procDirs) {
+      Set<String> result = new HashSet<>();
+      Map<String, List<String>> children = new HashMap<>();
+      for (File dir : procDirs) {
+        if (!Character.isDigit(dir.getName().charAt(0))) continue;
+        String[] fields = stat(dir);
+        if (fields == null) continue;
+        if (ownGroup && fields[2].equals(pgid)) {
+          result.add(dir.getName());
+        }
+        children.computeIfAbsent(fields[1], k -> new ArrayList<>()).add(dir.getName());
+      }
+      if (!ownGroup) {
+        Deque<String> todo = new ArrayDeque<>(Collections.singleton(pgid));
+        while (!todo.isEmpty()) {
+          String pid = todo.poll();
+          if (result.add(pid)) {
+            todo.addAll(children.getOrDefault(pid, Collections.emptyList()));
+          }
+        }
+      }
+      return result;
+    }
+
+    /** Fields of /proc/pid/stat after the command name (which may contain spaces): state ppid pgrp ...; null if the process ended */
+    private static String[] stat(File dir) {
+      try {
+        String stat = new String(Files.readAllBytes(new File(dir, "stat").toPath()));
+        return stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+      } catch (IOException | RuntimeException e) {
+        return null;
+      }
+    }
+
+    /** RSS of a process, or 0 if it ended */
+    private static long rssKB(File dir) {
+      try {
+        for (String line : Files.readAllLines(new File(dir, "status").toPath())) {
+          if (line.startsWith("VmRSS:")) {
+            return Long.parseLong(line.replaceAll("[^0-9]", ""));
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        // process ended in the meantime
+      }
+      return 0;
+    }
+
+    /** Stop sampling, and stop all remaining processes of the script */
+    void stopGroup() throws IOException, InterruptedException {
+      stopped = true;
+      if (groupId() == null) return;
+      List<String> cmd = new ArrayList<>(Arrays.asList("kill", "-TERM", "--"));
+      if (ownGroup) {
+        cmd.add("-" + pgid);
+      } else {
+        File[] procDirs = new File("/proc").listFiles();
+        if (procDirs == null) return;
+        cmd.addAll(processes(procDirs));
+      }
+      new ProcessBuilder(cmd).redirectError(ProcessBuilder.Redirect.to(new File("/dev/null"))).start().waitFor();
+    }
+  }
+
+  public static void main(String[] argv) throws IOException {
+    Args args = new Args();
+    JCommander cmd = JCommander.newBuilder().addObject(args).build();
+    cmd.parse(argv);
+    if (args.help) {
+      cmd.usage();
+      return;
+    }
+    if (args.output == null) {
+      new LUBMBenchmark(args).run(System.out);
+    } else {
+      try (PrintStream out = new PrintStream(new FileOutputStream(args.output))) {
+        new LUBMBenchmark(args).run(out);
+      }
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package javalog;
+
+import java.util.Arrays;
+
+import common.IntTable;
+
+/**
+ * Hash index on some columns of a table. Rows with the same key are chained, most recently indexed row first.
+ * Rows that are added to the table after the construction of the index can be indexed with {@link #update()}.
+ */
+class IntIndex {
+
+  private final IntTable table;
+
+  private final int[] columns;
+
+  /** Hash table with linear probing; contains first row of the chain + 1, or 0 for free slots */
+  private int[] slots = new int[16];
+
+  /** Row index -> next row with the same key, or -1 */
+  private int[] next = new int[16];
+
+  private int keyCount = 0;
+
+  /** Number of rows of the table that have been indexed */
+  private int indexed = 0;
+
+  IntIndex(IntTable table, int[] columns) {
+    this.table = table;
+    this.columns = columns;
+    update();
+  }
+
+  /** Index the rows that were added to the table since the last update */
+  void update() {
+    for (; indexed < table.size(); indexed++) {
+      insert(indexed);
+    }
+  }
+
+  /** First row of the table whose key columns have the same values as the given columns of a row of another table, or -1 */
+  int first(IntTable other, int otherRow, int[] otherColumns) {
+    int mask = slots.length - 1;
+    int slot = IntTable.hash(other, otherRow, otherColumns) & mask;
+    while (slots[slot] != 0) {
+      int row = slots[slot] - 1;
+      if (keyEquals(row, other, otherRow, otherColumns)) {
+        return row;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** Next row with the same key, or -1 */
+  int next(int row) {
+    return next[row];
+  }
+
+  private void insert(int row) {
+    if ((keyCount + 1) * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+    if (row >= next.length) {
+      next = Arrays.copyOf(next, Math.max(row + 1, next.length * 2));
+    }
+    int mask = slots.length - 1;
+    int slot = IntTable.hash(table, row, columns) & mask;
+    while (slots[slot] != 0) {
+      int head = slots[slot] - 1;
+      if (keyEquals(head, table, row, columns)) {
+        next[row] = head;
+        slots[slot] = row + 1;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    next[row] = -1;
+    slots[slot] = row + 1;
+    keyCount++;
+  }
+
+  private void rehash(int capacity) {
+    int[] newSlots = new int[capacity];
+    int mask = capacity - 1;
+    for (int head : slots) {
+      if (head == 0) continue;
+      int slot = IntTable.hash(table, head - 1, columns) & mask;
+      while (newSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newSlots[slot] = head;
+    }
+    slots = newSlots;
+  }
+
+  private boolean keyEquals(int row, IntTable other, int otherRow, int[] otherColumns) {
+    for (int i = 0; i < columns.length; i++) {
+      if (table.get(row, columns[i]) != other.get(otherRow, otherColumns[i])) return false;
+    }
+    return true;
+  }
+}
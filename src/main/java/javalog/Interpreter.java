@@ -0,0 +1,471 @@
+package javalog;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import bashlog.plan.TSVFileNode;
+import common.*;
+import common.parser.Constant;
+import common.plan.node.*;
+
+/**
+ * Evaluates a plan in memory. Values are encoded as integers with a dictionary, intermediate results are stored in
+ * {@link IntTable}s, and joins are hash joins. Results of subplans that do not depend on a placeholder are computed only once.
+ */
+public class Interpreter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Interpreter.class);
+
+  /** Builtin that provides the facts given to the interpreter, e.g. java_facts("rel/2", [X, Y]) */
+  public static final String FACTS_BUILTIN = "java_facts";
+
+  /** Builtin for bash commands */
+  public static final String BASH_BUILTIN = "bash_command";
+
+  /** Minimum number of probe rows that a join task processes */
+  private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+  private final FactsSet facts;
+
+  private final IntDictionary dictionary;
+
+  /** Directory in which bash commands are executed, and relative to which files are read */
+  private final File workingDir;
+
+  /** Current content of the placeholders (delta, full and reuse nodes) */
+  private final Map<PlaceholderNode, IntTable> placeholderContent = new HashMap<>();
+
+  /** Results of subplans without free placeholders */
+  private final Map<PlanNode, IntTable> cache = new IdentityHashMap<>();
+
+  /** Placeholders whose content is only extended while they are bound, i.e., full and reuse nodes */
+  private final Set<PlaceholderNode> stablePlaceholders = new HashSet<>();
+
+  /** Indices of stable tables, by table and indexed columns */
+  private final Map<IntTable, Map<List<Integer>, IntIndex>> indexCache = new IdentityHashMap<>();
+
+  /** Pool for joining chunks of the probe side of a join in parallel */
+  private final ForkJoinPool pool;
+
+  /** Placeholders used by a subplan, but not introduced by it */
+  private final Map<PlanNode, Set<PlaceholderNode>> freePlaceholders = new IdentityHashMap<>();
+
+  /**
+   * @param facts input facts; if it is a {@link ColumnarFactsSet}, its tables are used directly
+   * @param dictionary for encoding values; results need to be decoded with the same dictionary
+   */
+  public Interpreter(FactsSet facts, IntDictionary dictionary, File workingDir) {
+    this(facts, dictionary, workingDir, ForkJoinPool.commonPool());
+  }
+
+  /** @param pool used for joining large relations in parallel */
+  public Interpreter(FactsSet facts, IntDictionary dictionary, File workingDir, ForkJoinPool pool) {
+    this.facts = facts;
+    this.dictionary = dictionary;
+    this.workingDir = workingDir;
+    this.pool = pool;
+  }
+
+  /** Calculate the rows of a plan. The returned table must not be modified. */
+  public IntTable evaluate(PlanNode node) {
+    boolean cacheable = freePlaceholders(node).isEmpty();
+    if (cacheable) {
+      IntTable result = cache.get(node);
+      if (result != null) {
+        return result;
+      }
+    }
+    IntTable result = evaluateIntern(node);
+    if (cacheable) {
+      cache.put(node, result);
+    }
+    return result;
+  }
+
+  private IntTable evaluateIntern(PlanNode node) {
+    if (node instanceof PlaceholderNode) {
+      IntTable result = placeholderContent.get(node);
+      if (result == null) {
+        throw new IllegalStateException("placeholder without content: " + node.operatorString());
+      }
+      return result;
+    } else if (node instanceof FactNode) {
+      IntTable result = new IntTable(node.getArity());
+      ((FactNode) node).getFacts().forEach(row -> result.add(dictionary.encode(row)));
+      return result;
+    } else if (node instanceof BuiltinNode) {
+      return builtin((BuiltinNode) node);
+    } else if (node instanceof BashNode) {
+      return bash((BashNode) node);
+    } else if (node instanceof TSVFileNode) {
+      return readFile(((TSVFileNode) node).getPath(), node.getArity());
+    } else if (node instanceof ConstantEqualityFilterNode) {
+      return constantFilter((ConstantEqualityFilterNode) node);
+    } else if (node instanceof VariableEqualityFilterNode) {
+      return variableFilter((VariableEqualityFilterNode) node);
+    } else if (node instanceof ProjectNode) {
+      return project((ProjectNode) node);
+    } else if (node instanceof JoinNode) {
+      return join((JoinNode) node);
+    } else if (node instanceof AntiJoinNode) {
+      return antiJoin((AntiJoinNode) node);
+    } else if (node instanceof UnionNode) {
+      return union((UnionNode) node);
+    } else if (node instanceof RecursionNode) {
+      return recursion((RecursionNode) node);
+    } else if (node instanceof MaterializationNode) {
+      return materialization((MaterializationNode) node);
+    }
+    throw new UnsupportedOperationException("interpreter does not support plan node " + node.getClass() + ": " + node.operatorString());
+  }
+
+  private Set<PlaceholderNode> freePlaceholders(PlanNode node) {
+    Set<PlaceholderNode> result = freePlaceholders.get(node);
+    if (result == null) {
+      if (node instanceof PlaceholderNode) {
+        result = Collections.singleton((PlaceholderNode) node);
+      } else {
+        result = new HashSet<>();
+        for (PlanNode child : node.children()) {
+          result.addAll(freePlaceholders(child));
+        }
+        result.removeAll(node.placeholders());
+        if (result.isEmpty()) {
+          result = Collections.emptySet();
+        }
+      }
+      freePlaceholders.put(node, result);
+    }
+    return result;
+  }
+
+  private IntTable builtin(BuiltinNode node) {
+    String name = node.compoundTerm.name;
+    String arg = Objects.toString(((Constant<?>) node.compoundTerm.args[0]).getValue());
+    if (FACTS_BUILTIN.equals(name)) {
+      if (facts instanceof ColumnarFactsSet && ((ColumnarFactsSet) facts).getDictionary() == dictionary) {
+        IntTable table = ((ColumnarFactsSet) facts).getTable(arg);
+        return table == null ? new IntTable(node.getArity()) : table;
+      }
+      IntTable result = new IntTable(node.getArity());
+      facts.getByRelation(arg).forEach(row -> result.add(dictionary.encode(row)));
+      return result;
+    } else if (BASH_BUILTIN.equals(name)) {
+      return runCommand(arg, node.getArity());
+    }
+    throw new UnsupportedOperationException("interpreter does not support builtin " + name);
+  }
+
+  private IntTable bash(BashNode node) {
+    String file = node.getCatFile();
+    if (file != null) {
+      return readFile(file, node.getArity());
+    }
+
+    // store input relations in temporary files, and pass their paths to the command
+    List<Path> tmpFiles = new ArrayList<>();
+    try {
+      StringBuilder cmd = new StringBuilder(node.getCommandParts().get(0));
+      List<PlanNode> children = node.children();
+      for (int i = 0; i < children.size(); i++) {
+        Path path = Files.createTempFile("javalog-", ".tsv");
+        tmpFiles.add(path);
+        writeFile(path, evaluate(children.get(i)));
+        cmd.append(path.toAbsolutePath()).append(node.getCommandParts().get(i + 1));
+      }
+      return runCommand(cmd.toString(), node.getArity());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      for (Path path : tmpFiles) {
+        path.toFile().delete();
+      }
+    }
+  }
+
+  private IntTable runCommand(String cmd, int arity) {
+    LOG.debug("running {}", cmd);
+    try {
+      Process proc = new ProcessBuilder("/bin/bash", "-c", cmd).directory(workingDir).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+      proc.getOutputStream().close();
+      IntTable result;
+      try (BufferedReader br = new BufferedReader(new InputStreamReader(proc.getInputStream(), StandardCharsets.UTF_8))) {
+        result = read(br, arity);
+      }
+      int exitCode = proc.waitFor();
+      if (exitCode != 0) {
+        LOG.warn("command '{}' exited with code {}", cmd, exitCode);
+      }
+      return result;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while running " + cmd, e);
+    }
+  }
+
+  private IntTable readFile(String file, int arity) {
+    Path path = workingDir.toPath().resolve(file);
+    try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      return read(br, arity);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Read TSV lines and encode them */
+  private IntTable read(BufferedReader br, int arity) throws IOException {
+    IntTable result = new IntTable(arity);
+    int[] row = new int[arity];
+    String line;
+    while ((line = br.readLine()) != null) {
+      int start = 0;
+      for (int i = 0; i < arity; i++) {
+        int end = i == arity - 1 ? line.length() : line.indexOf('\t', start);
+        if (end < 0) {
+          throw new IllegalStateException("expected " + arity + " columns, but got line '" + line + "'");
+        }
+        row[i] = dictionary.encode(line.substring(start, end));
+        start = end + 1;
+      }
+      result.add(row);
+    }
+    return result;
+  }
+
+  private void writeFile(Path path, IntTable table) throws IOException {
+    try (BufferedWriter bw = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      for (int row = 0; row < table.size(); row++) {
+        for (int c = 0; c < table.arity(); c++) {
+          if (c > 0) bw.write('\t');
+          bw.write(dictionary.decode(table.get(row, c)));
+        }
+        bw.write('\n');
+      }
+    }
+  }
+
+  private IntTable constantFilter(ConstantEqualityFilterNode node) {
+    IntTable table = evaluate(node.getTable());
+    IntTable result = new IntTable(table.arity());
+    int field = node.getField();
+    int value = dictionary.lookup(node.getValue());
+    if (value < 0) {
+      return result;
+    }
+    int[] row = new int[table.arity()];
+    for (int i = 0; i < table.size(); i++) {
+      if (table.get(i, field) == value) {
+        table.getRow(i, row);
+        result.add(row);
+      }
+    }
+    return result;
+  }
+
+  private IntTable variableFilter(VariableEqualityFilterNode node) {
+    IntTable table = evaluate(node.getTable());
+    IntTable result = new IntTable(table.arity());
+    int field1 = node.getField1(), field2 = node.getField2();
+    int[] row = new int[table.arity()];
+    for (int i = 0; i < table.size(); i++) {
+      if (table.get(i, field1) == table.get(i, field2)) {
+        table.getRow(i, row);
+        result.add(row);
+      }
+    }
+    return result;
+  }
+
+  private IntTable project(ProjectNode node) {
+    IntTable table = evaluate(node.getTable());
+    int[] projection = node.getProjection();
+    int[] constants = new int[node.getArity()];
+    for (int i = 0; i < constants.length; i++) {
+      constants[i] = node.getConstant(i).map(dictionary::encode).orElse(-1);
+    }
+    IntTable result = new IntTable(node.getArity());
+    int[] row = new int[node.getArity()];
+    for (int i = 0; i < table.size(); i++) {
+      for (int c = 0; c < row.length; c++) {
+        row[c] = c < projection.length && projection[c] >= 0 ? table.get(i, projection[c]) : constants[c];
+      }
+      result.add(row);
+    }
+    return result;
+  }
+
+  /**
+   * Hash join. The index is built on an input whose index can be reused (e.g., full relation of a recursion),
+   * otherwise on the smaller input. Large probe sides are split into chunks which are joined in parallel.
+   */
+  private IntTable join(JoinNode node) {
+    IntTable left = evaluate(node.getLeft()), right = evaluate(node.getRight());
+    if (left.isEmpty() || right.isEmpty()) {
+      return new IntTable(node.getArity());
+    }
+    boolean leftStable = isStable(node.getLeft()), rightStable = isStable(node.getRight());
+    boolean buildLeft = leftStable != rightStable ? leftStable : left.size() <= right.size();
+    IntTable build = buildLeft ? left : right, probe = buildLeft ? right : left;
+    int[] buildProjection = buildLeft ? node.getLeftProjection() : node.getRightProjection();
+    IntIndex index = (buildLeft ? leftStable : rightStable) ? index(build, buildProjection) : new IntIndex(build, buildProjection);
+    int[] probeProjection = buildLeft ? node.getRightProjection() : node.getLeftProjection();
+    JoinTask task = new JoinTask(left.arity(), node.getArity(), buildLeft, build, index, probe, probeProjection, 0, probe.size());
+    return probe.size() < PARALLEL_THRESHOLD ? task.compute() : pool.invoke(task);
+  }
+
+  /** Whether the content of a plan does not change while it is used, so that its indices can be reused */
+  private boolean isStable(PlanNode node) {
+    return freePlaceholders(node).isEmpty() || stablePlaceholders.contains(node);
+  }
+
+  /** Get index of a stable table, index new rows if necessary */
+  private IntIndex index(IntTable table, int[] columns) {
+    Map<List<Integer>, IntIndex> indices = indexCache.computeIfAbsent(table, k -> new HashMap<>());
+    List<Integer> key = Arrays.stream(columns).boxed().collect(Collectors.toList());
+    IntIndex index = indices.computeIfAbsent(key, k -> new IntIndex(table, columns));
+    index.update();
+    return index;
+  }
+
+  /** Join rows [from, to) of the probe table with the index of the build table */
+  private static class JoinTask extends RecursiveTask<IntTable> {
+
+    private static final long serialVersionUID = 1L;
+
+    final int leftArity, arity;
+
+    final boolean buildLeft;
+
+    final IntTable build, probe;
+
+    final IntIndex index;
+
+    final int[] probeProjection;
+
+    final int from, to;
+
+    JoinTask(int leftArity, int arity, boolean buildLeft, IntTable build, IntIndex index, IntTable probe, int[] probeProjection, int from, int to) {
+      this.leftArity = leftArity;
+      this.arity = arity;
+      this.buildLeft = buildLeft;
+      this.build = build;
+      this.index = index;
+      this.probe = probe;
+      this.probeProjection = probeProjection;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected IntTable compute() {
+      if (to - from >= 2 * PARALLEL_THRESHOLD) {
+        int mid = (from + to) >>> 1;
+        JoinTask first = new JoinTask(leftArity, arity, buildLeft, build, index, probe, probeProjection, from, mid);
+        JoinTask second = new JoinTask(leftArity, arity, buildLeft, build, index, probe, probeProjection, mid, to);
+        first.fork();
+        IntTable result = second.compute();
+        IntTable other = first.join();
+        if (other.size() > result.size()) {
+          other.addAll(result);
+          return other;
+        }
+        result.addAll(other);
+        return result;
+      }
+
+      IntTable left = buildLeft ? build : probe, right = buildLeft ? probe : build;
+      IntTable result = new IntTable(arity);
+      int[] row = new int[arity];
+      for (int p = from; p < to; p++) {
+        for (int b = index.first(probe, p, probeProjection); b >= 0; b = index.next(b)) {
+          int l = buildLeft ? b : p, r = buildLeft ? p : b;
+          for (int c = 0; c < row.length; c++) {
+            row[c] = c < leftArity ? left.get(l, c) : right.get(r, c - leftArity);
+          }
+          result.add(row);
+        }
+      }
+      return result;
+    }
+  }
+
+  private IntTable antiJoin(AntiJoinNode node) {
+    IntTable left = evaluate(node.getLeft()), right = evaluate(node.getRight());
+    int[] projection = node.getLeftProjection();
+    IntTable result = new IntTable(left.arity());
+    int[] row = new int[left.arity()];
+    int[] key = new int[projection.length];
+    for (int i = 0; i < left.size(); i++) {
+      left.getRow(i, row);
+      for (int c = 0; c < projection.length; c++) {
+        key[c] = row[projection[c]];
+      }
+      if (!right.contains(key)) {
+        result.add(row);
+      }
+    }
+    return result;
+  }
+
+  private IntTable union(UnionNode node) {
+    IntTable result = new IntTable(node.getArity());
+    for (PlanNode child : node.getChildren()) {
+      result.addAll(evaluate(child));
+    }
+    return result;
+  }
+
+  /**
+   * Semi-naive evaluation. The full relation is only extended, so the indices on it need to index only the new rows.
+   * New rows are detected while adding them to the full relation, in O(|delta|).
+   */
+  private IntTable recursion(RecursionNode node) {
+    IntTable full = new IntTable(node.getArity());
+    full.addAll(evaluate(node.getExitPlan()));
+    IntTable delta = new IntTable(node.getArity());
+    delta.addAll(full);
+    int[] row = new int[node.getArity()];
+    stablePlaceholders.add(node.getFull());
+    try {
+      while (!delta.isEmpty()) {
+        placeholderContent.put(node.getDelta(), delta);
+        placeholderContent.put(node.getFull(), full);
+        IntTable candidates = evaluate(node.getRecursivePlan());
+        IntTable newDelta = new IntTable(node.getArity());
+        for (int i = 0; i < candidates.size(); i++) {
+          candidates.getRow(i, row);
+          if (full.add(row)) {
+            newDelta.add(row);
+          }
+        }
+        delta = newDelta;
+      }
+    } finally {
+      stablePlaceholders.remove(node.getFull());
+      placeholderContent.remove(node.getDelta());
+      placeholderContent.remove(node.getFull());
+    }
+    return full;
+  }
+
+  private IntTable materialization(MaterializationNode node) {
+    placeholderContent.put(node.getReuseNode(), evaluate(node.getReusedPlan()));
+    stablePlaceholders.add(node.getReuseNode());
+    try {
+      return evaluate(node.getMainPlan());
+    } finally {
+      stablePlaceholders.remove(node.getReuseNode());
+      placeholderContent.remove(node.getReuseNode());
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package javalog;
+
+import java.io.File;
+import java.util.*;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import common.*;
+import common.parser.*;
+import common.plan.LogicalPlanBuilder;
+import common.plan.node.PlanNode;
+import common.plan.optimizer.*;
+
+/** Execute datalog in the JVM, without generating a bash script */
+public class JavalogEvaluator implements Evaluator {
+
+  private static final Logger LOG = LoggerFactory.getLogger(JavalogEvaluator.class);
+
+  private static final Set<String> BUILTINS = new HashSet<>(Arrays.asList(Interpreter.FACTS_BUILTIN, Interpreter.BASH_BUILTIN));
+
+  /** Same simplification stage as the bash backend */
+  private static final List<Optimizer> OPTIMIZERS = Arrays.asList(new CombineFacts(), new SimplifyRecursion(), new PushDownJoin(),
+      new ReorderJoinLinear(), new PushDownFilterAndProject(), new SimplifyRecursion(), new PushDownFilterAndProject());
+
+  /** Working directory for bash commands and relative file names */
+  private final String workingDir;
+
+  private boolean debug = false;
+
+  private long timeCompile = 0, timeEval = 0; // in nano seconds
+
+  public JavalogEvaluator() {
+    this(".");
+  }
+
+  public JavalogEvaluator(String workingDir) {
+    this.workingDir = workingDir;
+  }
+
+  public JavalogEvaluator(String workingDir, boolean debug) {
+    this(workingDir);
+    this.debug = debug;
+  }
+
+  @Override
+  public Map<String, Long> getTiming() {
+    HashMap<String, Long> map = new HashMap<>();
+    map.put("compile", timeCompile);
+    map.put("eval", timeEval);
+    return map;
+  }
+
+  @Override
+  public FactsSet evaluate(Program program, FactsSet facts, Set<String> relationsToOutput) throws Exception {
+    timeCompile = -System.nanoTime();
+    program = program.copy();
+    for (String relation : facts.getRelations()) {
+      program.addRule(factsRule(relation));
+    }
+
+    Map<String, String> queryToRelation = new HashMap<>();
+    for (String query : relationsToOutput) {
+      String relation = program.searchRelation(query);
+      if (relation == null) throw new IllegalArgumentException("relation not found: " + query);
+      queryToRelation.put(query, relation);
+    }
+    SortedMap<String, PlanNode> plans = new LogicalPlanBuilder(BUILTINS, new HashSet<>(queryToRelation.values())).getPlanForProgram(program);
+    for (Map.Entry<String, PlanNode> entry : plans.entrySet()) {
+      PlanNode plan = entry.getValue();
+      for (Optimizer o : OPTIMIZERS) {
+        plan = o.apply(plan);
+      }
+      if (debug) {
+        LOG.info("plan for {}:\n{}", entry.getKey(), plan.toPrettyString());
+      }
+      entry.setValue(plan);
+    }
+    timeCompile += System.nanoTime();
+
+    timeEval = -System.nanoTime();
+    IntDictionary dictionary = facts instanceof ColumnarFactsSet ? ((ColumnarFactsSet) facts).getDictionary() : new IntDictionary();
+    Interpreter interpreter = new Interpreter(facts, dictionary, new File(workingDir));
+    ColumnarFactsSet result = new ColumnarFactsSet(dictionary);
+    // the interpreter might return tables of the input facts, or the same table for several queries
+    queryToRelation.forEach((query, relation) -> result.putTable(query, interpreter.evaluate(plans.get(relation)).copy()));
+    timeEval += System.nanoTime();
+    return result;
+  }
+
+  /** Rule rel(X0, ..., Xn) :- java_facts("rel/n", [X0, ..., Xn]). */
+  private static Rule factsRule(String relation) {
+    String[] rel = relation.split("/");
+    int arity = Integer.parseInt(rel[1]);
+    Variable[] variables = IntStream.range(0, arity).mapToObj(i -> new Variable("tmp_" + i)).toArray(Variable[]::new);
+    return new Rule(new CompoundTerm(rel[0], variables),
+        new CompoundTerm(Interpreter.FACTS_BUILTIN, new Constant<>(relation), new TermList(variables)));
+  }
+
+}
@@ -16,7 +16,6 @@ public class SqllogCompiler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SqllogCompiler.class);
   private static final Set<String> BUILDS_IN = Collections.singleton("sql_table");
-  private static final List<Optimizer> OPTIMIZERS = Arrays.asList(new SimplifyRecursion(), new ReorderJoinLinear(), new PushDownFilterAndProject());
 
   private static final String TABLE_ALIAS_PREFIX = "T";
 
@@ -32,14 +31,21 @@ public class SqllogCompiler {
   /** Use WITH RECURSIVE ... instead of WITH ..., RECURSIVE T1 ... */
   private final boolean recursiveDirectlyAfterWith;
 
+  private final List<Optimizer> optimizers;
+
   public SqllogCompiler() {
-    useWithForAliases = false;
-    recursiveDirectlyAfterWith = false;
+    this(false, false);
   }
 
   public SqllogCompiler(boolean useWithForAliases, boolean recursiveDirectlyAfterWith) {
+    this(useWithForAliases, recursiveDirectlyAfterWith, new ReorderJoinLinear());
+  }
+
+  /** @param joinOrder optimizer which decides the order of joins, e.g., {@link ReorderJoinCost} */
+  public SqllogCompiler(boolean useWithForAliases, boolean recursiveDirectlyAfterWith, Optimizer joinOrder) {
     this.useWithForAliases = useWithForAliases;
     this.recursiveDirectlyAfterWith = recursiveDirectlyAfterWith;
+    this.optimizers = Arrays.asList(new SimplifyRecursion(), joinOrder, new PushDownFilterAndProject());
   }
 
   public String compile(Program program, Set<String> relationsInTables, String relationToOutput) {
@@ -52,7 +58,7 @@ public class SqllogCompiler {
   }
 
   private PlanNode optimize(PlanNode node) {
-    for (Optimizer optimizer : OPTIMIZERS) {
+    for (Optimizer optimizer : optimizers) {
       node = optimizer.apply(node);
     }
     return node;
@@ -1,8 +1,140 @@
 package bashlog;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import common.FactsSet;
+import common.SimpleFactsSet;
+import common.Tools;
+import common.parser.ParserReader;
+import common.parser.Program;
+
 public class BashlogIntegrationTests extends common.IntegrationTests {
 
+  private final BashlogEvaluator eval;
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   public BashlogIntegrationTests() {
-    super(new BashlogEvaluator(".", "/tmp/bashlog-tests/", true));
+    this(new BashlogEvaluator(".", "/tmp/bashlog-tests/", true));
+  }
+
+  private BashlogIntegrationTests(BashlogEvaluator eval) {
+    super(eval);
+    this.eval = eval;
+  }
+
+  static Set<List<String>> rows(FactsSet facts, String relation) {
+    try (Stream<Comparable<?>[]> rows = facts.getByRelation(relation)) {
+      return rows.map(row -> Arrays.stream(row).map(Objects::toString).collect(Collectors.toList())).collect(Collectors.toSet());
+    }
+  }
+
+  /** Several relations are computed by one script (see {@link BashlogEvaluator#evaluate}), which shares their common subplans */
+  @Test
+  public void testSharedEvaluation() throws Exception {
+    Program program = Program.read(new ParserReader("ancestor(X,Y) :- parent(X,Y). ancestor(X,Z) :- ancestor(X,Y), parent(Y,Z). "
+        + "sibling(X,Y) :- parent(X,Z), parent(Y,Z). " //
+        + "cousin(X,Y) :- parent(X,A), parent(Y,B), sibling(A,B). " //
+        + "related(X,Y) :- ancestor(X,Z), ancestor(Y,Z). " //
+        + "descendantOfEve(X) :- ancestor(X,\"eve\")."));
+    SimpleFactsSet facts = new SimpleFactsSet();
+    String[][] parents = { { "adam", "eve" }, { "bob", "eve" }, { "carl", "adam" }, { "dora", "adam" }, { "emil", "bob" },
+        { "fred", "carl" }, { "gina", "emil" }, { "hugo", "emil" } };
+    for (String[] p : parents) {
+      facts.add("parent/2", p[0], p[1]);
+    }
+    Set<String> relations = Tools.set("ancestor/2", "sibling/2", "cousin/2", "related/2", "descendantOfEve/1");
+
+    BashlogEvaluator cached = new BashlogEvaluator(".", "/tmp/bashlog-tests/");
+    cached.setCompilerCache(new CompilerCache(CompilerCache.DEFAULT_MAX_SIZE));
+    for (BashlogEvaluator e : Arrays.asList(eval, cached)) {
+      FactsSet shared = e.evaluate(program, facts, relations);
+      Assert.assertEquals(relations, shared.getRelations());
+      for (String relation : relations) {
+        FactsSet single = e.evaluate(program, facts, Collections.singleton(relation));
+        Assert.assertEquals(relation, rows(single, relation), rows(shared, relation));
+      }
+      Assert.assertEquals(8, rows(shared, "descendantOfEve/1").size());
+    }
+  }
+
+  /** The facts are only written to the data directory if they changed */
+  @Test
+  public void testFactsRewritten() throws Exception {
+    BashlogEvaluator e = new BashlogEvaluator(".", tmp.getRoot().getPath());
+    Program program = Program.read(new ParserReader("out(X,Y) :- in(X,Y)."));
+    Path file = tmp.getRoot().toPath().resolve("in_2");
+    SimpleFactsSet facts = new SimpleFactsSet();
+    facts.add("in/2", "a", "b");
+    facts.add("in/2", "c", "d");
+    e.evaluate(program, facts, Tools.set("out/2"));
+    FileTime written = Files.getLastModifiedTime(file);
+
+    // wait, so that a rewrite would change the modification time
+    Thread.sleep(50);
+    Assert.assertEquals(rows(facts, "in/2"), rows(e.evaluate(program, facts, Tools.set("out/2")), "out/2"));
+    Assert.assertEquals(written, Files.getLastModifiedTime(file));
+
+    // same size, other content
+    SimpleFactsSet changed = new SimpleFactsSet();
+    changed.add("in/2", "a", "b");
+    changed.add("in/2", "c", "e");
+    Assert.assertEquals(rows(changed, "in/2"), rows(e.evaluate(program, changed, Tools.set("out/2")), "out/2"));
+    Assert.assertNotEquals(written, Files.getLastModifiedTime(file));
+
+    // the file was modified by someone else
+    Files.write(file, "x\ty\nz\tw\n".getBytes());
+    Assert.assertEquals(rows(changed, "in/2"), rows(e.evaluate(program, changed, Tools.set("out/2")), "out/2"));
+  }
+
+  /** Run a script with the PATH variable, and return its output */
+  private static String run(File script, String path) throws IOException, InterruptedException {
+    ProcessBuilder pb = new ProcessBuilder("/bin/bash", script.getPath()).directory(script.getParentFile());
+    pb.environment().put("PATH", path);
+    Process proc = pb.start();
+    String output = IOUtils.toString(proc.getInputStream(), StandardCharsets.UTF_8);
+    // process substitutions might outlive the script; they close stderr when they finish
+    System.err.print(IOUtils.toString(proc.getErrorStream(), StandardCharsets.UTF_8));
+    proc.waitFor();
+    return output;
+  }
+
+  /** A sort that fails must not leave its (possibly truncated) output in the sort cache */
+  @Test
+  public void testSortCacheFailedSort() throws Exception {
+    File dir = tmp.getRoot(), cache = new File(dir, "cache"), script = new File(dir, "query.sh");
+    Files.write(dir.toPath().resolve("in.txt"), "a\tb\nb\tc\n".getBytes());
+    Program program = Program.read(new ParserReader("e(X,Y) :~ cat in.txt\nout(X,Z) :- e(X,Y), e(Y,Z)."));
+    BashlogCompiler bc = BashlogCompiler.prepareQuery(program, "out/2");
+    bc.setSortCache(cache.getPath());
+    Files.write(script.toPath(), bc.compile().getBytes());
+
+    // sort fails, except when the script checks its options
+    String path = System.getenv("PATH");
+    File sort = new File(tmp.newFolder("bin"), "sort");
+    Files.write(sort.toPath(), ("#!/bin/bash\ncase \" $* \" in *\" --help \"*) PATH='" + path + "' exec sort \"$@\";; esac\nexit 2\n").getBytes());
+    Assert.assertTrue(sort.setExecutable(true));
+    Assert.assertEquals("", run(script, sort.getParent() + ":" + path));
+    Assert.assertTrue(cache.list() == null || cache.list().length == 0);
+
+    Assert.assertEquals("a\tc\n", run(script, path));
+    Assert.assertEquals(2, cache.list().length);
+    // read from the cache
+    Assert.assertEquals("a\tc\n", run(script, path));
   }
-}
\ No newline at end of file
+}
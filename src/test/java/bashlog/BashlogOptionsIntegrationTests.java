@@ -0,0 +1,74 @@
+package bashlog;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+import org.junit.Assert;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import common.Evaluator;
+import common.FactsSet;
+import common.parser.Program;
+import common.plan.optimizer.ReorderJoinCost;
+
+/** Run the integration tests with an option of the compiler, and check that the results equal those of the default options */
+@RunWith(Parameterized.class)
+public class BashlogOptionsIntegrationTests extends common.IntegrationTests {
+
+  private static final String DIR = "/tmp/bashlog-tests/options/";
+
+  private static Consumer<BashlogEvaluator> compiler(Consumer<BashlogCompiler> options) {
+    return e -> e.setCompilerOptions(options);
+  }
+
+  @Parameters(name = "{0}")
+  public static Collection<Object[]> getOptions() {
+    Map<String, Consumer<BashlogEvaluator>> options = new LinkedHashMap<>();
+    options.put("cost-based join order", compiler(bc -> bc.setJoinOrder(new ReorderJoinCost())));
+    options.put("sort cache", compiler(bc -> bc.setSortCache(DIR + "sort-cache")));
+    options.put("compress tmp", compiler(bc -> bc.setCompressTmp(true)));
+    options.put("dictionary encoding", compiler(bc -> bc.setDictionaryEncoding(true)));
+    options.put("resource budget", compiler(bc -> bc.setResources(new ResourceBudget(3, "64M", Collections.emptyList()))));
+    options.put("profiling", BashlogEvaluator::enableProfiling);
+    options.put("all", compiler(bc -> {
+      bc.setJoinOrder(new ReorderJoinCost());
+      bc.setSortCache(DIR + "sort-cache");
+      bc.setCompressTmp(true);
+      bc.setDictionaryEncoding(true);
+      bc.setResources(new ResourceBudget(3, "64M", Collections.emptyList()));
+    }).andThen(BashlogEvaluator::enableProfiling));
+
+    Collection<Object[]> params = new ArrayList<>();
+    options.forEach((name, option) -> params.add(new Object[] { name, option }));
+    return params;
+  }
+
+  public BashlogOptionsIntegrationTests(String name, Consumer<BashlogEvaluator> option) {
+    super(new ComparingEvaluator(option));
+  }
+
+  /** Evaluates with the option, and with the default options; fails if the results differ */
+  private static class ComparingEvaluator implements Evaluator {
+
+    private final BashlogEvaluator standard = new BashlogEvaluator(".", DIR + "default/");
+
+    private final BashlogEvaluator withOption = new BashlogEvaluator(".", DIR + "option/");
+
+    ComparingEvaluator(Consumer<BashlogEvaluator> option) {
+      option.accept(withOption);
+    }
+
+    @Override
+    public FactsSet evaluate(Program program, FactsSet facts, Set<String> queryRelations) throws Exception {
+      FactsSet expected = standard.evaluate(program, facts, queryRelations);
+      FactsSet actual = withOption.evaluate(program, facts, queryRelations);
+      for (String relation : queryRelations) {
+        Assert.assertEquals(relation, BashlogIntegrationTests.rows(expected, relation), BashlogIntegrationTests.rows(actual, relation));
+        Assert.assertEquals(relation, expected.getByRelation(relation).count(), actual.getByRelation(relation).count());
+      }
+      return actual;
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package bashlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import common.parser.ParserReader;
+import common.parser.Program;
+import common.plan.optimizer.ReorderJoinCost;
+import common.statistics.StatisticsCollector;
+
+public class CompilerCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static Program program(String text) {
+    return Program.read(new ParserReader(text), BashlogCompiler.BASHLOG_PARSER_FEATURES);
+  }
+
+  private static final String PATH = "a(X,Y) :~ cat a.txt\n" //
+      + "path(X,Y) :- a(X,Y).\n" //
+      + "path(X,Z) :- path(X,Y), a(Y,Z).\n" //
+      + "twice(X,Z) :- a(X,Y), a(Y,Z).\n";
+
+  @Test
+  public void testHit() {
+    CompilerCache cache = new CompilerCache(CompilerCache.DEFAULT_MAX_SIZE);
+    String script = cache.compile(program(PATH), "path");
+    Assert.assertEquals(0, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+
+    // the order of the rules, and rules that the query does not use, do not matter
+    Program reordered = program("path(X,Z) :- path(X,Y), a(Y,Z).\n" //
+        + "unused(X) :- a(X,X).\n" //
+        + "path(X,Y) :- a(X,Y).\n" //
+        + "a(X,Y) :~ cat a.txt\n");
+    Assert.assertSame(script, cache.compile(reordered, "path/2"));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+    Assert.assertEquals(1, cache.getEntries());
+    Assert.assertEquals(script.length(), cache.getSize());
+  }
+
+  @Test
+  public void testMiss() {
+    CompilerCache cache = new CompilerCache(CompilerCache.DEFAULT_MAX_SIZE);
+    String path = cache.compile(program(PATH), "path");
+    String twice = cache.compile(program(PATH), "twice");
+    Assert.assertNotEquals(path, twice);
+    // a rule of a dependency changed
+    cache.compile(program(PATH.replace("cat a.txt", "cat b.txt")), "path");
+    // different join order
+    cache.compile(program(PATH), "path", new ReorderJoinCost(new StatisticsCollector(tmp.getRoot())));
+    Assert.assertEquals(0, cache.getHits());
+    Assert.assertEquals(4, cache.getMisses());
+    Assert.assertEquals(4, cache.getEntries());
+  }
+
+  @Test
+  public void testEviction() {
+    Program p = program(PATH);
+    String path = new CompilerCache(0).compile(p, "path");
+    String twice = new CompilerCache(0).compile(p, "twice");
+
+    // room for one of the scripts
+    CompilerCache cache = new CompilerCache(Math.max(path.length(), twice.length()));
+    cache.compile(p, "path");
+    cache.compile(p, "twice");
+    Assert.assertEquals(1, cache.getEntries());
+    Assert.assertEquals(twice.length(), cache.getSize());
+    cache.compile(p, "twice");
+    Assert.assertEquals(1, cache.getHits());
+    // the least recently used script was evicted
+    cache.compile(p, "path");
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(3, cache.getMisses());
+
+    // a script larger than the cache is kept until the next one arrives
+    CompilerCache small = new CompilerCache(1);
+    small.compile(p, "path");
+    Assert.assertEquals(1, small.getEntries());
+    small.compile(p, "twice");
+    Assert.assertEquals(1, small.getEntries());
+    Assert.assertEquals(twice.length(), small.getSize());
+  }
+
+  @Test
+  public void testCostBasedInputChanged() throws IOException {
+    File a = tmp.newFile("a.txt");
+    Files.write(a.toPath(), "x\ty\ny\tz\n".getBytes());
+    Program p = program(PATH);
+    CompilerCache cache = new CompilerCache(CompilerCache.DEFAULT_MAX_SIZE);
+    StatisticsCollector statistics = new StatisticsCollector(tmp.getRoot());
+
+    cache.compile(p, "twice", new ReorderJoinCost(statistics));
+    cache.compile(p, "twice", new ReorderJoinCost(statistics));
+    Assert.assertEquals(1, cache.getHits());
+
+    // same size, but new content and modification time
+    Files.write(a.toPath(), "y\tz\nx\ty\n".getBytes());
+    Assert.assertTrue(a.setLastModified(a.lastModified() + 10_000));
+    cache.compile(p, "twice", new ReorderJoinCost(statistics));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(2, cache.getMisses());
+
+    // the default join order does not read the statistics
+    cache.compile(p, "twice");
+    Files.write(a.toPath(), "x\ty\n".getBytes());
+    cache.compile(p, "twice");
+    Assert.assertEquals(2, cache.getHits());
+  }
+}
@@ -0,0 +1,88 @@
+package bashlog.plan;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import common.plan.node.PlanNode;
+
+public class SortOrderTest {
+
+  private PlanNode a = new TSVFileNode("a", 2), b = new TSVFileNode("b", 2), c = new TSVFileNode("c", 3);
+
+  private static void assertOrder(int[] columns, boolean distinct, SortOrder order) {
+    Assert.assertArrayEquals(order.toString(), columns, order.getColumns());
+    Assert.assertEquals(order.toString(), distinct, order.isDistinct());
+  }
+
+  @Test
+  public void testSort() {
+    assertOrder(new int[] {}, false, SortOrder.of(c));
+    assertOrder(new int[] { 0, 1, 2 }, true, SortOrder.of(new SortNode(c, null)));
+    // sort -k 2 compares from the second column to the end of the line
+    assertOrder(new int[] { 1, 2 }, false, SortOrder.of(new SortNode(c, new int[] { 1 })));
+    assertOrder(new int[] { 2, 0, 1 }, true, SortOrder.of(new SortNode(c, new int[] { 2, 0, 1 })));
+
+    Assert.assertTrue(SortOrder.full(3).satisfies(SortOrder.of(new SortNode(c, new int[] { 0 }))));
+    Assert.assertFalse(SortOrder.of(new SortNode(c, new int[] { 0 })).satisfies(SortOrder.full(3)));
+    Assert.assertFalse(SortOrder.of(new SortNode(c, new int[] { 1 })).satisfies(SortOrder.of(new SortNode(c, new int[] { 0 }))));
+  }
+
+  @Test
+  public void testUnion() {
+    assertOrder(new int[] { 0, 1 }, true, SortOrder.of(a.union(b)));
+  }
+
+  @Test
+  public void testJoin() {
+    // join outputs the rows in the order of the join column
+    assertOrder(new int[] { 1 }, false, SortOrder.of(new SortJoinNode(a, b, new int[] { 1 }, new int[] { 0 })));
+    assertOrder(new int[] { 0 }, false,
+        SortOrder.of(new SortJoinNode(a, b, new int[] { 1 }, new int[] { 0 }, new int[] { 2, 3 })));
+    assertOrder(new int[] {}, false, SortOrder.of(new SortJoinNode(a, b, new int[] { 1 }, new int[] { 0 }, new int[] { 0, 3 })));
+    assertOrder(new int[] { 1 }, false, SortOrder.of(new SortAntiJoinNode(a, b, new int[] { 1 })));
+
+    // hash joins keep the order of the left input, semi joins also keep it distinct
+    PlanNode sorted = new SortNode(a, null);
+    assertOrder(new int[] { 0, 1 }, false, SortOrder.of(new HashJoinNode(sorted, b, new int[] { 1 }, new int[] { 0 })));
+    assertOrder(new int[] { 1 }, false,
+        SortOrder.of(new HashJoinNode(sorted, b, new int[] { 1 }, new int[] { 0 }, new int[] { 3, 0, 2 })));
+    assertOrder(new int[] { 0, 1 }, true,
+        SortOrder.of(new HashSemiJoinNode(sorted, b, new int[] { 1 }, new int[] { 0 }, new int[] { 0, 1 })));
+    assertOrder(new int[] {}, false, SortOrder.of(new HashJoinNode(b, sorted, new int[] { 1 }, new int[] { 0 })));
+  }
+
+  @Test
+  public void testProjection() {
+    PlanNode sorted = new SortNode(c, null);
+    assertOrder(new int[] { 1, 0, 2 }, true, SortOrder.of(sorted.project(new int[] { 1, 0, 2 })));
+    // the order is kept up to the first column that is dropped
+    assertOrder(new int[] { 0, 1 }, false, SortOrder.of(sorted.project(new int[] { 0, 1 })));
+    assertOrder(new int[] { 1 }, false, SortOrder.of(sorted.project(new int[] { 2, 0 })));
+    assertOrder(new int[] {}, false, SortOrder.of(sorted.project(new int[] { 1, 2 })));
+    assertOrder(new int[] { 0, 1, 2 }, true, SortOrder.of(sorted.equalityFilter(1, "x")));
+  }
+
+  @Test
+  public void testRemoveSorts() {
+    RemoveSorts rs = new RemoveSorts();
+    // union is sorted with sort -u
+    PlanNode union = a.union(b);
+    Assert.assertEquals(union, rs.apply(new SortNode(union, null)));
+    Assert.assertEquals(union, rs.apply(new SortNode(union, new int[] { 0 })));
+
+    // join on the column that the previous join was sorted on
+    PlanNode j1 = new SortJoinNode(new SortNode(a, new int[] { 1 }), new SortNode(b, new int[] { 0 }), new int[] { 1 }, new int[] { 0 });
+    PlanNode j2 = new SortJoinNode(new SortNode(j1, new int[] { 1 }), new SortNode(c, new int[] { 0 }), new int[] { 1 }, new int[] { 0 });
+    Assert.assertEquals(new SortJoinNode(j1, new SortNode(c, new int[] { 0 }), new int[] { 1 }, new int[] { 0 }), rs.apply(j2));
+    // join on another column
+    PlanNode j3 = new SortJoinNode(new SortNode(j1, new int[] { 3 }), new SortNode(c, new int[] { 0 }), new int[] { 3 }, new int[] { 0 });
+    Assert.assertEquals(j3, rs.apply(j3));
+
+    // projection keeps the sort order of its input
+    PlanNode prj = new SortNode(c, null).project(new int[] { 0, 1 });
+    Assert.assertEquals(prj, rs.apply(new SortNode(prj, new int[] { 0 })));
+    Assert.assertEquals(new SortNode(prj, null), rs.apply(new SortNode(prj, null)));
+    PlanNode swapped = new SortNode(c, null).project(new int[] { 1, 0 });
+    Assert.assertEquals(new SortNode(swapped, new int[] { 0 }), rs.apply(new SortNode(swapped, new int[] { 0 })));
+  }
+}
@@ -0,0 +1,98 @@
+package common;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntTableTest {
+
+  @Test
+  public void testDuplicates() {
+    IntTable table = new IntTable(2);
+    Assert.assertTrue(table.add(new int[] { 1, 2 }));
+    Assert.assertTrue(table.add(new int[] { 2, 1 }));
+    Assert.assertFalse(table.add(new int[] { 1, 2 }));
+    Assert.assertEquals(2, table.size());
+    Assert.assertTrue(table.contains(new int[] { 2, 1 }));
+    Assert.assertFalse(table.contains(new int[] { 2, 2 }));
+  }
+
+  @Test
+  public void testGrowth() {
+    // several blocks, and several rehashes of the slots
+    IntTable table = new IntTable(3);
+    int n = 20_000;
+    for (int i = 0; i < n; i++) {
+      Assert.assertTrue(table.add(new int[] { i, i % 7, -i }));
+    }
+    for (int i = 0; i < n; i++) {
+      Assert.assertFalse(table.add(new int[] { i, i % 7, -i }));
+      Assert.assertArrayEquals(new int[] { i, i % 7, -i }, table.getRow(i));
+    }
+    Assert.assertEquals(n, table.size());
+  }
+
+  @Test
+  public void testArityZero() {
+    IntTable table = new IntTable(0);
+    Assert.assertTrue(table.isEmpty());
+    Assert.assertTrue(table.add(new int[0]));
+    Assert.assertFalse(table.add(new int[0]));
+    Assert.assertEquals(1, table.size());
+    Assert.assertTrue(table.contains(new int[0]));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongArity() {
+    new IntTable(2).add(new int[] { 1 });
+  }
+
+  @Test
+  public void testCopy() {
+    IntTable table = new IntTable(1);
+    for (int i = 0; i < 5000; i++) {
+      table.add(new int[] { i });
+    }
+    IntTable copy = table.copy();
+    copy.add(new int[] { -1 });
+    table.add(new int[] { -2 });
+    Assert.assertEquals(5001, copy.size());
+    Assert.assertTrue(copy.contains(new int[] { -1 }));
+    Assert.assertFalse(copy.contains(new int[] { -2 }));
+    Assert.assertFalse(table.contains(new int[] { -1 }));
+    Assert.assertTrue(copy.contains(new int[] { 4999 }));
+  }
+
+  @Test
+  public void testDictionary() {
+    IntDictionary dictionary = new IntDictionary();
+    int[] row = dictionary.encode(new Object[] { "a", 1, "b", "1" });
+    // values are compared by their string representation
+    Assert.assertArrayEquals(new int[] { 0, 1, 2, 1 }, row);
+    Assert.assertArrayEquals(new Comparable<?>[] { "a", "1", "b", "1" }, dictionary.decode(row));
+    Assert.assertEquals(2, dictionary.lookup("b"));
+    Assert.assertEquals(-1, dictionary.lookup("c"));
+    Assert.assertEquals(3, dictionary.size());
+  }
+
+  @Test
+  public void testColumnarFactsSet() {
+    ColumnarFactsSet facts = new ColumnarFactsSet();
+    facts.add("r/2", "a", "b");
+    facts.add("r/2", "a", "b");
+    facts.add("r/2", "b", "c");
+    facts.add("s/0");
+    Assert.assertEquals(new HashSet<>(Arrays.asList("r/2", "s/0")), facts.getRelations());
+    Set<List<Comparable<?>>> rows = facts.getByRelation("r/2").map(Arrays::asList).collect(Collectors.toSet());
+    Assert.assertEquals(new HashSet<>(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("b", "c"))), rows);
+    Assert.assertEquals(1, facts.getByRelation("s/0").count());
+    Assert.assertEquals(0, facts.getByRelation("t/1").count());
+
+    // facts sets with a shared dictionary use the same ids
+    ColumnarFactsSet other = new ColumnarFactsSet(facts.getDictionary());
+    other.add("r/1", "c");
+    Assert.assertEquals(facts.getTable("r/2").get(1, 1), other.getTable("r/1").get(0, 0));
+  }
+}
@@ -0,0 +1,97 @@
+package common.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import common.SimpleFactsSet;
+
+public class ParserReaderTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /** String of random letters, with an escaped quote every few thousand characters if escapes is true */
+  private static String randomString(Random random, int length, boolean escapes) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append(escapes && i % 5000 == 4999 ? "\\\"" : (char) ('a' + random.nextInt(26)));
+    }
+    return sb.toString();
+  }
+
+  /** About 2 MB of rules and facts; the strings are longer than the window of the reader */
+  private static String largeProgram() {
+    Random random = new Random(42);
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      sb.append("% comment ").append(i).append("\n");
+      sb.append("fact(\"f").append(i).append("\", \"").append(randomString(random, 70_000, i % 3 == 0)).append("\").\n");
+      sb.append("rule").append(i).append("(X, Z) :- fact(X, Y), rule").append(i + 1).append("(Y, Z).\n");
+      sb.append("bash").append(i).append("(X) :~ cat file").append(i).append(".txt\n");
+    }
+    return sb.toString();
+  }
+
+  private static List<String> rules(Program p) {
+    return p.rules().stream().map(Object::toString).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testReaderEqualsString() {
+    String text = largeProgram();
+    Assert.assertTrue(text.length() > 2_000_000);
+    List<String> fromString = rules(Program.read(new ParserReader(text)));
+    List<String> fromReader = rules(Program.read(new ParserReader(new StringReader(text))));
+    Assert.assertEquals(90, fromString.size());
+    Assert.assertEquals(fromString, fromReader);
+  }
+
+  @Test
+  public void testLoadFacts() throws IOException {
+    Random random = new Random(42);
+    List<String> values = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 10; i++) {
+      String value = randomString(random, 70_000, false) + "ä€";
+      values.add(value);
+      sb.append("% fact ").append(i).append("\nlong(").append(i).append(", \"").append(value).append("\").\n");
+    }
+    File file = tmp.newFile("facts.txt");
+    Files.write(file.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+
+    SimpleFactsSet facts = new SimpleFactsSet();
+    facts.loadFile(file.toPath());
+    Set<String> loaded = facts.getByRelation("long/2").map(row -> row[1].toString()).collect(Collectors.toSet());
+    Assert.assertEquals(new HashSet<>(values), loaded);
+  }
+
+  @Test
+  public void testErrorLine() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 1; i < 20_000; i++) {
+      sb.append("a(").append(i).append(", \"").append(i).append("\").\n");
+    }
+    sb.append("a(X) :- b(X");
+    String text = sb.toString();
+    Assert.assertTrue(text.length() > 3 << 16);
+
+    for (ParserReader pr : Arrays.asList(new ParserReader(text), new ParserReader(new StringReader(text)))) {
+      try {
+        Program.read(pr);
+        Assert.fail("expected a parse error");
+      } catch (ParseException e) {
+        Assert.assertTrue(e.getMessage(), e.getMessage().contains("at line 20000:"));
+      }
+    }
+  }
+}
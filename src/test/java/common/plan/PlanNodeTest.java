@@ -1,16 +1,30 @@
 package common.plan;
 
-import java.util.Objects;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import bashlog.plan.TSVFileNode;
+import common.IntDictionary;
+import common.IntTable;
+import common.SimpleFactsSet;
 import common.parser.*;
 import common.plan.node.*;
 import common.plan.optimizer.*;
+import common.statistics.StatisticsCollector;
+import javalog.Interpreter;
 
 public class PlanNodeTest {
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   private TermList args1 = new TermList(new Variable("X"));
 
   private TermList args2 = new TermList(new Variable("X"), new Variable("Y"));
@@ -321,6 +335,77 @@ public class PlanNodeTest {
         );
   }
 
+  @Test
+  public void testTransformDag() {
+    PlanNode foo = new BuiltinNode(new CompoundTerm("foo", args2));
+    PlanNode shared = foo.join(foo, new int[] { 1 }, new int[] { 0 });
+    PlanNode projected = shared.project(new int[] { 0, 3 });
+    PlanNode filtered = shared.equalityFilter(0, "a");
+    PlanNode root = projected.union(filtered.project(new int[] { 3, 0 }));
+
+    // the shared subplan is transformed once, and both occurrences are replaced by the same node
+    List<PlanNode> transformed = new ArrayList<>();
+    PlanNode result = root.transform((o, n, p) -> {
+      if (o == shared) transformed.add(n);
+      return n;
+    });
+    Assert.assertEquals(root, result);
+    Assert.assertEquals(1, transformed.size());
+    List<PlanNode> occurrences = new ArrayList<>();
+    result.visit(n -> {
+      if (n.equals(shared)) occurrences.add(n);
+    });
+    Assert.assertEquals(1, occurrences.size());
+    Assert.assertSame(transformed.get(0), occurrences.get(0));
+
+    // with a path, every occurrence is transformed, e.g., for replacing the occurrences by different nodes
+    List<PlanNode> parents = new ArrayList<>();
+    root.transform((o, n, p) -> {
+      if (o == shared) parents.add(PlanNode.parent(p));
+      return n;
+    }, new ArrayList<>());
+    Assert.assertEquals(2, parents.size());
+    Assert.assertTrue(parents.stream().anyMatch(p -> p == projected));
+    Assert.assertTrue(parents.stream().anyMatch(p -> p == filtered));
+  }
+
+  @Test
+  public void testJoinReorderBushy() throws IOException {
+    // k(X,W) :- label(X,"red"), j(X,Y), j(Y,W) with j(X,Z) :- edge(X,Y), edge(Y,Z); the join of the j's is a right child
+    Random random = new Random(42);
+    StringBuilder edges = new StringBuilder(), labels = new StringBuilder();
+    for (int i = 0; i < 300; i++) {
+      edges.append("n").append(random.nextInt(60)).append("\tn").append(random.nextInt(60)).append("\n");
+    }
+    for (int i = 0; i < 60; i++) {
+      labels.append("n").append(i).append(i % 3 == 0 ? "\tred\n" : "\tblue\n");
+    }
+    File edgeFile = tmp.newFile("edge"), labelFile = tmp.newFile("label");
+    Files.write(edgeFile.toPath(), edges.toString().getBytes());
+    Files.write(labelFile.toPath(), labels.toString().getBytes());
+
+    PlanNode edge = new TSVFileNode(edgeFile.getPath(), 2);
+    PlanNode label = new TSVFileNode(labelFile.getPath(), 2).equalityFilter(1, "red");
+    PlanNode j = edge.join(edge, new int[] { 1 }, new int[] { 0 });
+    PlanNode plan = label.join(j.join(j, new int[] { 3 }, new int[] { 0 }), new int[] { 0 }, new int[] { 0 });
+
+    Set<List<Comparable<?>>> expected = evaluate(plan);
+    Assert.assertFalse(expected.isEmpty());
+    for (Optimizer optimizer : Arrays.asList(new ReorderJoinLinear(), new ReorderJoinCost(new StatisticsCollector(tmp.getRoot())))) {
+      Assert.assertEquals(optimizer.getClass().getSimpleName(), expected, evaluate(optimizer.apply(plan)));
+    }
+  }
+
+  private Set<List<Comparable<?>>> evaluate(PlanNode plan) {
+    IntDictionary dictionary = new IntDictionary();
+    IntTable table = new Interpreter(new SimpleFactsSet(), dictionary, tmp.getRoot()).evaluate(plan);
+    Set<List<Comparable<?>>> result = new HashSet<>();
+    for (int i = 0; i < table.size(); i++) {
+      result.add(Arrays.asList(dictionary.decode(table.getRow(i))));
+    }
+    return result;
+  }
+
   private static void assertEquals(PlanNode expected, PlanNode actual) {
     if (!Objects.equals(expected, actual)) {
       System.out.println("expected:");
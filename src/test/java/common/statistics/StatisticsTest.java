@@ -0,0 +1,104 @@
+package common.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.IntFunction;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import bashlog.plan.TSVFileNode;
+import common.plan.node.BashNode;
+import common.plan.node.PlanNode;
+
+public class StatisticsTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /** Write a TSV file whose row i is produced by the function */
+  private File file(String name, int rows, IntFunction<String> row) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < rows; i++) {
+      sb.append(row.apply(i)).append("\n");
+    }
+    File f = new File(tmp.getRoot(), name);
+    Files.write(f.toPath(), sb.toString().getBytes());
+    return f;
+  }
+
+  private static PlanNode bash(String command) {
+    return new BashNode(command, Collections.singletonList(command), Collections.emptyList(), 2);
+  }
+
+  @Test
+  public void testCollect() throws IOException {
+    // column 0: 5000 distinct values, column 1: "hot" in every second row, column 2: 100 distinct values
+    File f = file("rel", 20_000, i -> (i % 5000) + "\t" + (i % 2 == 0 ? "hot" : "v" + i) + "\t" + (i % 100));
+    RelationStatistics stats = StatisticsCollector.collect(f, 3);
+    Assert.assertEquals(20_000, stats.getRows());
+    // KMV sketch: estimate for many values, exact for less values than the sketch size
+    Assert.assertEquals(5000, stats.getDistinct(0), 500);
+    Assert.assertEquals(100, stats.getDistinct(2));
+    // Misra-Gries: lower bound of the frequency, the error is at most rows / (counters + 1)
+    long hot = stats.getHeavyHitters(1).get("hot");
+    Assert.assertTrue(hot + " occurrences of hot", hot <= 10_000 && hot >= 10_000 - 20_000 / 33);
+    Assert.assertEquals(hot, stats.estimateRows(1, "hot"), 0);
+    Assert.assertTrue(stats.getHeavyHitters(2).isEmpty());
+    Assert.assertEquals(200, stats.estimateRows(2, "7"), 0);
+  }
+
+  @Test
+  public void testSidecar() throws IOException {
+    File f = file("rel", 10, i -> i + "\ta");
+    StatisticsCollector collector = new StatisticsCollector(tmp.getRoot());
+    Assert.assertEquals(10, collector.get("rel", 2).getRows());
+    File sidecar = StatisticsCollector.sidecar(f);
+    Assert.assertTrue(sidecar.isFile());
+
+    // statistics of the sidecar file are used as long as the file does not change
+    String key = f.lastModified() + "\t" + f.length() + "\t" + 2;
+    new RelationStatistics(42, new long[] { 1, 1 }, Arrays.asList(new HashMap<>(), new HashMap<>())).write(sidecar.toPath(), key);
+    Assert.assertEquals(42, new StatisticsCollector(tmp.getRoot()).get("rel", 2).getRows());
+
+    // a new modification time (same size) refreshes the statistics
+    file("rel", 10, i -> i + "\tb");
+    Assert.assertTrue(f.setLastModified(f.lastModified() + 10_000));
+    Assert.assertEquals(10, new StatisticsCollector(tmp.getRoot()).get("rel", 2).getRows());
+    Assert.assertEquals(10, collector.get("rel", 2).getRows());
+    Assert.assertTrue(Files.readAllLines(sidecar.toPath()).get(0).startsWith("key\t" + f.lastModified() + "\t"));
+
+    Assert.assertNull(collector.get("missing", 2));
+  }
+
+  @Test
+  public void testEstimates() throws IOException {
+    // a: 1000 rows, 100 distinct values in column 0; b: 500 rows, 50 distinct values in column 0, constant column 1
+    File a = file("a", 1000, i -> (i % 100) + "\t" + i);
+    File b = file("b", 500, i -> (i % 50) + "\tx");
+    CardinalityEstimator estimator = new CardinalityEstimator(new StatisticsCollector(tmp.getRoot()));
+    PlanNode fa = new TSVFileNode(a.getPath(), 2), fb = bash("cat " + b.getPath());
+
+    Assert.assertEquals(1000, estimator.rows(fa), 0);
+    Assert.assertEquals(500, estimator.rows(fb), 0);
+    Assert.assertTrue(estimator.isKnown(fb));
+
+    // |a| * |b| / max(distinct)
+    PlanNode join = fa.join(fb, new int[] { 0 }, new int[] { 0 });
+    Assert.assertEquals(1000 * 500 / 100, estimator.rows(join), 0);
+    Assert.assertEquals(50, estimator.distinct(join, 0), 0);
+    Assert.assertTrue(estimator.isKnown(join));
+
+    // uniform value, and heavy hitter
+    Assert.assertEquals(10, estimator.rows(fa.equalityFilter(0, "3")), 0);
+    Assert.assertEquals(500, estimator.rows(fb.equalityFilter(1, "x")), 0);
+
+    PlanNode unknown = bash("grep x " + b.getPath());
+    Assert.assertFalse(estimator.isKnown(unknown.join(fa, new int[] { 0 }, new int[] { 0 })));
+    Assert.assertEquals(CardinalityEstimator.DEFAULT_ROWS, estimator.rows(unknown), 0);
+  }
+}
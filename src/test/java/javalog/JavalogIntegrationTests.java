@@ -0,0 +1,29 @@
+package javalog;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import common.ColumnarFactsSet;
+import common.Tools;
+import common.parser.ParserReader;
+import common.parser.Program;
+
+public class JavalogIntegrationTests extends common.IntegrationTests {
+
+  public JavalogIntegrationTests() {
+    super(new JavalogEvaluator("."));
+  }
+
+  @Test
+  public void testResultDoesNotShareTables() throws Exception {
+    Program program = Program.read(new ParserReader("out(X,Y) :- in(X,Y)."));
+    ColumnarFactsSet facts = new ColumnarFactsSet();
+    facts.add("in/2", "a", "b");
+
+    ColumnarFactsSet result = (ColumnarFactsSet) new JavalogEvaluator(".").evaluate(program, facts, Tools.set("out/2"));
+    result.add("out/2", "c", "d");
+    facts.add("in/2", "e", "f");
+    Assert.assertEquals(2, facts.getByRelation("in/2").count());
+    Assert.assertEquals(2, result.getByRelation("out/2").count());
+  }
+}